@@ -0,0 +1,51 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * BenchmarkModel makes a private copy of the bundled covid-model.nlogo for the
+ * benchmarks to open. The copy lives in a temporary folder and has that folder
+ * substituted for '[File Location]', so the benchmarks never write into the
+ * project. Set -Dcovid.model to the model's path if the benchmarks are not
+ * run from the project root.
+ */
+public class BenchmarkModel {
+
+    public static final String MODEL = "covid-model.nlogo";
+
+    /**
+     * Copy the model into a new temporary folder.
+     *
+     * @return The folder, ending in a separator so it can be used like Solver.projectPath
+     */
+    public static String prepare() {
+        try {
+            Path source = Paths.get(System.getProperty("covid.model", MODEL));
+            Path folder = Files.createTempDirectory("covid-bench");
+            String model = new String(Files.readAllBytes(source), StandardCharsets.UTF_8);
+
+            String location = folder.toString() + File.separator;
+
+            // Inside the model the path is a NetLogo string, so its backslashes are escaped
+            model = model.replace("[File Location]\\\\", location.replace("\\", "\\\\"));
+
+            Files.write(folder.resolve(MODEL), model.getBytes(StandardCharsets.UTF_8));
+            return location;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not copy the model for benchmarking", e);
+        }
+    }
+
+    /**
+     * Open a simulation of a fresh copy of the model.
+     */
+    public static ModelSimulation open() {
+        return new ModelSimulation(prepare(), MODEL, 0);
+    }
+}
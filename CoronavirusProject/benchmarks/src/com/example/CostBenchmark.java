@@ -0,0 +1,55 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the daily cost formula over a year of averaged counters, the
+ * loop finishEvaluation runs once per evaluation. The CostKernel's
+ * coefficients come from the policy beginEvaluation reads from the model.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CostBenchmark {
+
+    ModelSimulation ms;
+    double[][] series;
+    double[] dailyCost;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        ms = BenchmarkModel.open();
+        ms.setInitialConditions();
+        ms.beginEvaluation();
+
+        Random random = new Random(42);
+        series = new double[ModelSimulation.SERIES][ms.noDays];
+        dailyCost = new double[ms.noDays];
+        for (int d = 0; d < ms.noDays; d++) {
+            series[ModelSimulation.INFECTED][d] = random.nextInt(100);
+            series[ModelSimulation.DEATHS][d] = random.nextInt(3);
+            series[ModelSimulation.POPULATION][d] = 380 + random.nextInt(40);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        ms.dispose();
+    }
+
+    @Benchmark
+    public double dailyCost() {
+        return ms.costs.sumCost(series, 0, ms.noDays) / ms.noDays;
+    }
+
+    @Benchmark
+    public double dailyCosts() {
+        return ms.costs.dailyCosts(series, dailyCost) / ms.noDays;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading one replicate back from the log file the model writes
+ * when the counters are not captured in memory. The log is filled with
+ * made up counters in the same layout as NetLogo's file-write.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LogParsingBenchmark {
+
+    ModelSimulation ms;
+
+    @Setup(Level.Trial)
+    public void writeLog() throws IOException {
+        ms = BenchmarkModel.open();
+        Random random = new Random(42);
+
+        PrintWriter out = new PrintWriter(ms.getLogFile());
+        for (int d = 0; d < ms.noDays; d++) {
+            int infected = random.nextInt(100);
+            out.println(" " + infected + " " + (380 + random.nextInt(40)) + " " + random.nextInt(50) + " "
+                    + random.nextInt(30) + " " + (infected * 0.113) + " " + random.nextInt(3));
+        }
+        out.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        ms.dispose();
+    }
+
+    @Benchmark
+    public double[][] readTickLog() throws FileNotFoundException {
+        ms.readTickLog();
+        return ms.replicate;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the GA operators on a population the size evolveNetLogo uses,
+ * and breeding a whole generation of a large population as Chromosomes and
+ * as a Population. These don't touch NetLogo at all.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OperatorBenchmark {
+
+    static final int LARGE = 2000;  // The size of a surrogate screened run
+
+    GA ga = new GA();
+    Chromosome[] pop;
+    Chromosome[] large;
+    Chromosome[] largeChild = new Chromosome[LARGE];
+    Population parents;
+    Population children;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        pop = new Chromosome[30];
+        for (int p = 0; p < pop.length; p++) {
+            pop[p] = new Chromosome(12, 1);
+            pop[p].setFitness((float) Math.random());
+        }
+
+        large = new Chromosome[LARGE];
+        for (int p = 0; p < large.length; p++) {
+            large[p] = new Chromosome(12, 1);
+            large[p].setFitness((float) Math.random());
+        }
+        parents = Population.of(large);
+        children = new Population(LARGE, 12);
+    }
+
+    @Benchmark
+    public Chromosome tournamentSelect() {
+        return ga.tournamentSelect(pop, 4);
+    }
+
+    @Benchmark
+    public Chromosome onePointCrossover() {
+        return ga.onePointCrossover(pop[0], pop[1]);
+    }
+
+    @Benchmark
+    public Chromosome mutateReal() {
+        Chromosome c = pop[2].clone();
+        c.mutateReal(0.05f);
+        return c;
+    }
+
+    @Benchmark
+    public Chromosome[] breedChromosomes() {
+        ga.breed(large, largeChild, 0.05f, 4);
+        return largeChild;
+    }
+
+    @Benchmark
+    public Population breedPopulation() {
+        ga.breed(parents, children, 0.05f, 4);
+        return children;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for setting up and running the model. A full simulate call takes
+ * seconds, so it is timed one call at a time rather than in a tight loop.
+ * Only simulate depends on the size of the run, so only it is run over the
+ * number-people and loops matrix.
+ */
+@Fork(1)
+public class SimulationBenchmark {
+
+    // A workspace with the model open
+    @State(Scope.Benchmark)
+    public static class Model {
+
+        ModelSimulation ms;
+        Chromosome chrome;
+
+        @Setup(Level.Trial)
+        public void open() {
+            ms = BenchmarkModel.open();
+            chrome = new Chromosome(12, 1);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            ms.dispose();
+        }
+    }
+
+    // The same, with the size of the run simulate is timed over
+    @State(Scope.Benchmark)
+    public static class Run extends Model {
+
+        @Param({"100", "250", "400"})
+        public int numberPeople;
+
+        @Param({"1", "10"})
+        public int loops;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public void setInitialConditions(Model m) {
+        m.ms.setInitialConditions();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public void setParameter(Model m) {
+        m.ms.setParameter("lockdown-threshold", "12.345");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public double simulate(Run r) throws FileNotFoundException {
+        r.ms.setInitialConditions();
+        r.ms.setParameter("number-people", r.numberPeople);
+        return r.ms.simulate(1, r.loops, r.ms.getDataFile(), r.chrome);
+    }
+}
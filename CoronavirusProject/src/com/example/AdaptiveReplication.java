@@ -0,0 +1,143 @@
+package com.example;
+
+import java.io.FileNotFoundException;
+
+/**
+ * AdaptiveReplication races a candidate against a threshold instead of always
+ * running a fixed number of replicates. Replicates are run one at a time and
+ * a running mean and variance of their scores is kept. Once 'minReplicates'
+ * have run, a candidate whose confidence interval lies entirely above the
+ * threshold is clearly worse and is stopped. A candidate that is clearly
+ * better stops after the usual number of replicates, and one whose interval
+ * still straddles the threshold keeps going until 'maxReplicates'.
+ *
+ * The interval is a Student t interval with n - 1 degrees of freedom, since
+ * with only a handful of replicates the standard error is itself a rough
+ * estimate and a normal interval would stop candidates on almost no evidence.
+ * It is an interval for the mean of the replicates' own costs, while the
+ * fitness the threshold comes from is the cost of the averaged daily series,
+ * so the two only roughly agree; the test is a guide to when more replicates
+ * are worth running, not an exact comparison with the threshold.
+ */
+public class AdaptiveReplication {
+
+    private final int minReplicates;
+    private final int maxReplicates;
+    private final int standardReplicates;    // How many to run when there is nothing to race against
+    private final double confidence;
+    private final double[] t;                // One sided critical value for the confidence level after n replicates
+
+    /**
+     * @param minReplicates    Fewest replicates before a candidate can be stopped
+     * @param maxReplicates    Most replicates a close candidate will be given
+     * @param confidence       Confidence level of the test, e.g. 0.95
+     */
+    public AdaptiveReplication(int minReplicates, int maxReplicates, double confidence) {
+        if (minReplicates < 2 || maxReplicates < minReplicates)
+            throw new IllegalArgumentException("Need 2 <= minReplicates <= maxReplicates");
+        this.minReplicates = minReplicates;
+        this.maxReplicates = maxReplicates;
+        this.standardReplicates = Math.max(minReplicates, Math.min(maxReplicates, Solver.LOOPS));
+        this.confidence = confidence;
+        t = new double[maxReplicates + 1];
+        for (int n = 2; n <= maxReplicates; n++) t[n] = studentCriticalValue(confidence, n - 1);
+    }
+
+    /**
+     * Run replicates of the parameters already set in 'ms' until the candidate has been
+     * separated from 'threshold', then score it the same way simulate would.
+     *
+     * @param ms           The simulation, with its parameters set
+     * @param chrome       The chromosome being scored
+     * @param threshold    The fitness to race against, or NaN to run the standard number of replicates
+     * @param cutoff       The score beyond which the evaluation is abandoned (see ModelSimulation.runReplicate)
+     * @return The average daily cost over the replicates that were run
+     */
+    public float evaluate(ModelSimulation ms, Chromosome chrome, float threshold, double cutoff) throws FileNotFoundException {
+        RunningStatistics stats = new RunningStatistics();
+        boolean racing = !Float.isNaN(threshold);
+        int limit = racing ? maxReplicates : standardReplicates;
+
+        ms.beginEvaluation();
+        while (stats.getCount() < limit) {
+            // However the race goes, the average is over at most 'limit' replicates
+            double score = ms.runReplicate(cutoff, limit);
+            if (ms.isAborted()) return ms.abortEvaluation(chrome);
+            stats.add(score);
+            if (racing && decided(stats, threshold)) break;
+        }
+        return ms.finishEvaluation(chrome);
+    }
+
+    // Lower fitness is better, so a lower bound above the threshold means clearly worse
+    private boolean decided(RunningStatistics stats, float threshold) {
+        int n = stats.getCount();
+        if (n < 2) return false;
+        double margin = t[n] * stats.getStandardError();
+        if (n >= minReplicates && stats.getMean() - margin > threshold) return true;
+        return n >= standardReplicates && stats.getMean() + margin < threshold;
+    }
+
+    public int getMinReplicates() {
+        return minReplicates;
+    }
+
+    public int getMaxReplicates() {
+        return maxReplicates;
+    }
+
+    /**
+     * @return How many replicates a candidate gets when there is nothing to race against;
+     *         one stopped before this many was only run far enough to lose its race
+     */
+    public int getStandardReplicates() {
+        return standardReplicates;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * The value of Student's t with 'df' degrees of freedom exceeded with probability
+     * 1 - confidence: exact for 1 and 2 degrees of freedom and otherwise Hill's
+     * approximation (Algorithm 396, Communications of the ACM, 1970).
+     */
+    static double studentCriticalValue(double confidence, int df) {
+        double p = 2 * (1 - confidence);   // Hill's algorithm works with the two sided probability
+        if (df == 1) return Math.cos(p * Math.PI / 2) / Math.sin(p * Math.PI / 2);
+        if (df == 2) return Math.sqrt(2 / (p * (2 - p)) - 2);
+
+        double a = 1 / (df - 0.5);
+        double b = 48 / (a * a);
+        double c = ((20700 * a / b - 98) * a - 16) * a + 96.36;
+        double d = ((94.5 / (b + c) - 3) / b + 1) * Math.sqrt(a * Math.PI / 2) * df;
+        double x = d * p;
+        double y = Math.pow(x, 2.0 / df);
+        if (y > 0.05 + a) {
+            // Start from the normal value and correct it for the degrees of freedom
+            x = -criticalValue(confidence);
+            y = x * x;
+            if (df < 5) c += 0.3 * (df - 4.5) * (x + 0.6);
+            c = (((0.05 * d * x - 5) * x - 7) * x - 2) * x + b + c;
+            y = (((((0.4 * y + 6.3) * y + 36) * y + 94.5) / c - y - 3) / b + 1) * x;
+            y = a * y * y;
+            y = y > 0.002 ? Math.exp(y) - 1 : 0.5 * y * y + y;
+        } else {
+            y = ((1 / (((df + 6) / (df * y) - 0.089 * d - 0.822) * (df + 2) * 3) + 0.5 / (df + 4)) * y - 1)
+                    * (df + 1) / (df + 2) + 1 / y;
+        }
+        return Math.sqrt(df * y);
+    }
+
+    /**
+     * The standard normal value exceeded with probability 1 - confidence, using the
+     * rational approximation from Abramowitz and Stegun (26.2.23).
+     */
+    static double criticalValue(double confidence) {
+        if (confidence <= 0.5 || confidence >= 1)
+            throw new IllegalArgumentException("Confidence must be between 0.5 and 1");
+        double t = Math.sqrt(-2 * Math.log(1 - confidence));
+        return t - (2.515517 + 0.802853 * t + 0.010328 * t * t) / (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+    }
+}
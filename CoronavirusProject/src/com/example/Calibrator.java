@@ -0,0 +1,256 @@
+package com.example;
+
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calibrator fits the model's own parameters (infectiousness, recovery time,
+ * compliance and so on) to the NHS case data. Each gene of a chromosome is
+ * one parameter scaled into its range, and the fitness is the Euclidean
+ * distance between the normalised average new infections and the normalised
+ * NHS daily cases (or deaths), as in DataMatching. The GA's operators evolve the settings,
+ * a population is scored in parallel over a WorkspacePool, and settings we
+ * have already tried are taken from a FitnessCache.
+ *
+ * Every candidate's runs use the same seeds, so candidates are compared on
+ * the same random numbers.
+ */
+public class Calibrator {
+
+    /**
+     * A model parameter to calibrate: a slider or global and the values it may take.
+     */
+    public static class Parameter {
+        final String name;
+        final double min;
+        final double max;
+        final double step;      // Values are rounded to a multiple of this above 'min'
+
+        public Parameter(String name, double min, double max, double step) {
+            this.name = name;
+            this.min = min;
+            this.max = max;
+            this.step = step;
+        }
+
+        // Scale a gene between 0 and 1 into our range
+        double decode(float gene) {
+            return min + Math.round(gene * (max - min) / step) * step;
+        }
+    }
+
+    // The parameters we normally calibrate, with the steps of their sliders
+    public static final Parameter[] DEFAULT_PARAMETERS = {
+            new Parameter("infectiousness", 1, 99, 1),
+            new Parameter("avg-recovery-time", 5, 30, 1),
+            new Parameter("percentage-asymp", 0, 100, 1),
+            new Parameter("incubation-period", 1, 14, 1),
+            new Parameter("isolation-compliance", 0, 100, 1),
+            new Parameter("lockdown-compliance", 0, 100, 1),
+            new Parameter("social-distancing-compliance", 0, 100, 1),
+            new Parameter("protection-compliance", 0, 100, 1),
+            new Parameter("number-people", 250, 5000, 10),
+    };
+
+    private final WorkspacePool pool;
+    private final Parameter[] parameters;
+    private final int noRuns;               // Runs averaged for each candidate
+    private final int noDays;               // Days compared with the NHS data
+    private final double[] target;          // The normalised NHS daily cases or deaths
+    private final String log;               // The model's list of the same count
+    private final Seeds seeds;
+    private final FitnessCache<List<Double>> cache = new FitnessCache<>(Solver.CACHE_SIZE);
+    private final AtomicInteger evaluations = new AtomicInteger();
+    private final ExecutorService executor;
+
+    /**
+     * @param pool       The workspaces to run the model on
+     * @param parameters The parameters to calibrate
+     * @param noRuns     How many runs to average for each candidate
+     * @param noDays     How many days to compare with the NHS data
+     * @param seeds      Where each run's seed comes from
+     */
+    public Calibrator(WorkspacePool pool, Parameter[] parameters, int noRuns, int noDays, Seeds seeds) throws IOException {
+        this(pool, parameters, noRuns, noDays, seeds, DataMatching.Target.CASES, null, 1);
+    }
+
+    /**
+     * @param pool       The workspaces to run the model on
+     * @param parameters The parameters to calibrate
+     * @param noRuns     How many runs to average for each candidate
+     * @param noDays     How many days to compare with the NHS data
+     * @param seeds      Where each run's seed comes from
+     * @param matched    Whether to match the NHS cases or deaths
+     * @param start      The first day of NHS data to compare, or null for the first in the file
+     * @param window     How many days' rolling mean to take of the NHS data, 1 for none
+     */
+    public Calibrator(WorkspacePool pool, Parameter[] parameters, int noRuns, int noDays, Seeds seeds,
+                      DataMatching.Target matched, LocalDate start, int window) throws IOException {
+        this.pool = pool;
+        this.parameters = parameters;
+        this.noRuns = noRuns;
+        this.noDays = noDays;
+        this.seeds = seeds;
+        // The NHS data is loaded once and shared, so several calibrators don't read it again
+        target = DataMatching.readTarget(Solver.projectPath + DataMatching.NHS_DATA, noDays, matched, start, window);
+        log = matched.log;
+        executor = Executors.newFixedThreadPool(pool.size(), r -> {
+            Thread t = new Thread(r, "calibrator");
+            t.setDaemon(true); // Don't keep the JVM alive once we have finished
+            return t;
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        WorkspacePool pool = new WorkspacePool(Solver.projectPath, "covid-model.nlogo", Runtime.getRuntime().availableProcessors());
+        long masterSeed = System.currentTimeMillis();
+        // Calibrator(WorkspacePool pool, Parameter[] parameters, int noRuns, int noDays, Seeds seeds)
+        Calibrator calibrator = new Calibrator(pool, DEFAULT_PARAMETERS, 10, 100, new Seeds(masterSeed));
+        // Or to match the deaths, smoothed over a week:
+        // Calibrator calibrator = new Calibrator(pool, DEFAULT_PARAMETERS, 10, 100, new Seeds(masterSeed), DataMatching.Target.DEATHS, null, 7);
+        // calibrate(int popsize, int generations, float mutationRate, int tournamentSize, Random random)
+        Chromosome best = calibrator.calibrate(30, 20, 0.05f, 4, new Random(masterSeed));
+        calibrator.write(best, Solver.projectPath + "calibration.txt");
+
+        calibrator.shutdown();
+        pool.close();
+        System.out.println("Finished.");
+        System.exit(0);
+    }
+
+    /**
+     * Evolve the parameters towards the NHS data.
+     *
+     * @param popsize        The size of the GA population to use
+     * @param generations    How many generations to run it for
+     * @param mutationRate   The mutation rate
+     * @param tournamentSize How many solutions to include in each tournament
+     * @param random         Where the GA's random choices come from
+     * @return The best settings found
+     */
+    public Chromosome calibrate(int popsize, int generations, float mutationRate, int tournamentSize, Random random) throws FileNotFoundException {
+        GA ga = new GA();
+        ga.setRandom(random);
+
+        Chromosome[] pop = new Chromosome[popsize];
+        for (int p = 0; p < popsize; p++)
+            pop[p] = new Chromosome(parameters.length, 1, random);
+        scorePopulation(pop);
+
+        Chromosome[] child = new Chromosome[popsize];
+        for (int g = 0; g < generations; g++) {
+            ga.breed(pop, child, mutationRate, tournamentSize);
+            scorePopulation(child);
+            ga.replaceGeneration(pop, child);
+
+            Chromosome best = ga.getRefBest(pop);
+            System.out.println(String.format("%d\t%.5f\t%s", g, best.getFitness(), describe(best)));
+        }
+
+        Chromosome best = ga.getRefBest(pop);
+        System.out.println("Calibration evaluations " + evaluations + "\n" + cache);
+        System.out.println("Best distance " + best.getFitness() + "\n" + describe(best));
+        return best;
+    }
+
+    /**
+     * @return The parameter values 'c' stands for, in the same order as the parameters
+     */
+    public List<Double> decode(Chromosome c) {
+        Double[] values = new Double[parameters.length];
+        for (int i = 0; i < parameters.length; i++) values[i] = parameters[i].decode(c.getGene(i));
+        return Arrays.asList(values);
+    }
+
+    /**
+     * Score every chromosome in 'pop', one per workspace at a time.
+     */
+    public void scorePopulation(Chromosome[] pop) throws FileNotFoundException {
+        List<Future<Float>> scores = new ArrayList<>(pop.length);
+        for (Chromosome c : pop) scores.add(executor.submit(() -> score(c)));
+
+        for (Future<Float> score : scores) {
+            try {
+                score.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while scoring population", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof FileNotFoundException) throw (FileNotFoundException) e.getCause();
+                throw new IllegalStateException("Failed to score chromosome", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * @param c A chromosome
+     * @return The distance between its average curve and the NHS data
+     */
+    public float score(Chromosome c) throws InterruptedException {
+        List<Double> values = decode(c);
+        Evaluation cached = cache.get(values);
+        if (cached != null) {
+            cached.applyTo(c);
+            return c.getFitness();
+        }
+
+        double[] mean = new double[noDays];
+        ModelSimulation ms = pool.acquire();
+        try {
+            ms.setSeeds(seeds, 0);
+            for (int i = 0; i < parameters.length; i++)
+                ms.setParameter(parameters[i].name, values.get(i));
+            for (int run = 0; run < noRuns; run++) {
+                double[] daily = ms.runMatching(noDays, run, log);
+                for (int d = 0; d < noDays; d++) mean[d] += (daily[d] - mean[d]) / (run + 1);
+            }
+        } finally {
+            pool.release(ms);
+        }
+
+        float distance = (float) DataMatching.distance(target, mean);
+        c.setFitness(distance);
+        cache.put(values, Evaluation.of(c));
+        evaluations.incrementAndGet();
+        return distance;
+    }
+
+    /**
+     * @return The parameter settings 'c' stands for, one "name value" pair per parameter
+     */
+    public String describe(Chromosome c) {
+        List<Double> values = decode(c);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parameters.length; i++)
+            sb.append(parameters[i].name).append(' ').append(values.get(i)).append(i < parameters.length - 1 ? "\t" : "");
+        return sb.toString();
+    }
+
+    /**
+     * Write the settings 'c' stands for to 'filepath', one parameter per line, followed by its distance.
+     */
+    public void write(Chromosome c, String filepath) throws IOException {
+        List<Double> values = decode(c);
+        try (PrintWriter out = new PrintWriter(new FileWriter(filepath))) {
+            for (int i = 0; i < parameters.length; i++)
+                out.println(parameters[i].name + "\t" + values.get(i));
+            out.println("distance\t" + c.getFitness());
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,343 @@
+package com.example;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CaseDataset holds the NHS case data in memory as primitive columns: the
+ * date of each row as an epoch day, then the daily cases, cumulative cases and
+ * (cumulative) deaths. A file is only parsed once and is then shared by
+ * everything that loads it, e.g. every run of DataMatching and every candidate
+ * of a Calibrator.
+ *
+ * The data is read through Curves, which are views onto the columns: a curve
+ * can be sliced to a range of days, smoothed with a rolling mean or normalised
+ * to between 0 and 1 without copying anything. Rolling means are worked out
+ * from running totals kept for each column, so they cost the same whatever
+ * the window.
+ */
+public class CaseDataset {
+
+    public enum Column {
+        DAILY_CASES("DailyCases"),
+        CUMULATIVE_CASES("CumulativeCases"),
+        DEATHS("Deaths");
+
+        final String header;
+
+        Column(String header) {
+            this.header = header;
+        }
+    }
+
+    // Every dataset loaded so far, by absolute path
+    private static final Map<String, CaseDataset> loaded = new HashMap<>();
+
+    private final String filepath;
+    private final int[] epochDays;          // The date of each row
+    private final double[][] columns;       // [Column.ordinal()][row]
+    private final double[][] totals;        // [Column.ordinal()][row + 1], the sum of the rows before each one
+
+    private CaseDataset(String filepath, int[] epochDays, double[][] columns) {
+        this.filepath = filepath;
+        this.epochDays = epochDays;
+        this.columns = columns;
+        totals = new double[columns.length][epochDays.length + 1];
+        for (int c = 0; c < columns.length; c++)
+            for (int r = 0; r < epochDays.length; r++) totals[c][r + 1] = totals[c][r] + columns[c][r];
+    }
+
+    /**
+     * Load the csv file at 'filepath', or return the copy we have already loaded.
+     *
+     * @param filepath A csv file with a Date column (yyyyMMdd) and a column for each of Column's headers
+     */
+    public static synchronized CaseDataset load(String filepath) throws IOException {
+        String key = Paths.get(filepath).toAbsolutePath().normalize().toString();
+        CaseDataset data = loaded.get(key);
+        if (data == null) {
+            data = parse(filepath);
+            loaded.put(key, data);
+        }
+        return data;
+    }
+
+    private static CaseDataset parse(String filepath) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(filepath)))) {
+            String header = in.readLine();
+            if (header == null) throw new IOException(filepath + " is empty");
+
+            // Find each column by its header, so the order in the file doesn't matter
+            List<String> headers = split(header);
+            int dateField = headers.indexOf("Date");
+            if (dateField < 0) throw new IOException(filepath + " has no Date column");
+            int[] fields = new int[Column.values().length];
+            for (Column c : Column.values()) {
+                fields[c.ordinal()] = headers.indexOf(c.header);
+                if (fields[c.ordinal()] < 0) throw new IOException(filepath + " has no " + c.header + " column");
+            }
+
+            List<String> lines = new ArrayList<>();
+            for (String line = in.readLine(); line != null; line = in.readLine())
+                if (!line.isEmpty()) lines.add(line);
+
+            int[] epochDays = new int[lines.size()];
+            double[][] columns = new double[fields.length][lines.size()];
+            for (int r = 0; r < lines.size(); r++) {
+                List<String> values = split(lines.get(r));
+                try {
+                    int date = Integer.parseInt(values.get(dateField));
+                    epochDays[r] = (int) LocalDate.of(date / 10000, date / 100 % 100, date % 100).toEpochDay();
+                    for (int c = 0; c < fields.length; c++) columns[c][r] = Double.parseDouble(values.get(fields[c]));
+                } catch (RuntimeException e) {
+                    throw new IOException(filepath + " line " + (r + 2) + " can't be read: " + lines.get(r), e);
+                }
+                // Rows are looked up by date, so there must be one for every day
+                if (r > 0 && epochDays[r] != epochDays[r - 1] + 1)
+                    throw new IOException(filepath + " line " + (r + 2) + " doesn't follow on from the day before");
+            }
+            System.out.println("Loaded " + lines.size() + " days of case data from " + filepath);
+            return new CaseDataset(filepath, epochDays, columns);
+        }
+    }
+
+    private static List<String> split(String line) {
+        List<String> values = new ArrayList<>();
+        int start = 0;
+        for (int comma = line.indexOf(','); comma >= 0; comma = line.indexOf(',', start)) {
+            values.add(line.substring(start, comma).trim());
+            start = comma + 1;
+        }
+        values.add(line.substring(start).trim());
+        return values;
+    }
+
+    /**
+     * @return How many days of data there are
+     */
+    public int size() {
+        return epochDays.length;
+    }
+
+    public LocalDate getDate(int row) {
+        return LocalDate.ofEpochDay(epochDays[row]);
+    }
+
+    public LocalDate getFirstDate() {
+        return getDate(0);
+    }
+
+    /**
+     * @return The row holding 'date'
+     */
+    public int indexOf(LocalDate date) {
+        long row = date.toEpochDay() - epochDays[0];
+        if (row < 0 || row >= size())
+            throw new IllegalArgumentException(filepath + " has no data for " + date + ", only "
+                    + getFirstDate() + " to " + getDate(size() - 1));
+        return (int) row;
+    }
+
+    /**
+     * @return A curve over every day of 'column'
+     */
+    public Curve column(Column column) {
+        return new ColumnCurve(columns[column.ordinal()], totals[column.ordinal()]);
+    }
+
+    /**
+     * @return The deaths on each day, worked out from the cumulative Deaths column
+     */
+    public Curve dailyDeaths() {
+        return new DailyCurve(column(Column.DEATHS));
+    }
+
+    /**
+     * @return 'curve' cut down to 'days' days from 'from', with a clear error if the data doesn't cover them
+     */
+    public Curve range(Curve curve, LocalDate from, int days) {
+        int start = from == null ? 0 : indexOf(from);
+        if (days < 0 || start + days > curve.size())
+            throw new IllegalArgumentException(filepath + " only has " + (curve.size() - start) + " days of data from "
+                    + getDate(start) + ", not " + days);
+        return curve.slice(start, days);
+    }
+
+    /**
+     * A read only view of one value per day.
+     */
+    public abstract static class Curve {
+
+        public abstract int size();
+
+        public abstract double get(int day);
+
+        /**
+         * @return The sum of the days from 'from' up to but not including 'to'
+         */
+        public double sum(int from, int to) {
+            double sum = 0;
+            for (int d = from; d < to; d++) sum += get(d);
+            return sum;
+        }
+
+        /**
+         * @return A view of 'length' days starting at 'from'
+         */
+        public Curve slice(int from, int length) {
+            if (from < 0 || length < 0 || from + length > size())
+                throw new IndexOutOfBoundsException("Days " + from + " to " + (from + length) + " of " + size());
+            return new SliceCurve(this, from, length);
+        }
+
+        /**
+         * @return A view where each day is the mean of itself and the 'window' - 1 days before it
+         * (fewer at the start of the curve)
+         */
+        public Curve rolling(int window) {
+            if (window < 1) throw new IllegalArgumentException("Rolling window must be at least 1, not " + window);
+            return window == 1 ? this : new RollingCurve(this, window);
+        }
+
+        /**
+         * @return A view scaled so the smallest day is 0 and the largest is 1, or all zeros if the curve is flat
+         */
+        public Curve normalised() {
+            return new NormalisedCurve(this);
+        }
+
+        public double[] toArray() {
+            double[] values = new double[size()];
+            for (int d = 0; d < values.length; d++) values[d] = get(d);
+            return values;
+        }
+    }
+
+    private static class ColumnCurve extends Curve {
+        private final double[] values;
+        private final double[] totals;
+
+        ColumnCurve(double[] values, double[] totals) {
+            this.values = values;
+            this.totals = totals;
+        }
+
+        public int size() {
+            return values.length;
+        }
+
+        public double get(int day) {
+            return values[day];
+        }
+
+        public double sum(int from, int to) {
+            return totals[to] - totals[from];
+        }
+    }
+
+    // The change from one day to the next of a cumulative curve
+    private static class DailyCurve extends Curve {
+        private final Curve cumulative;
+
+        DailyCurve(Curve cumulative) {
+            this.cumulative = cumulative;
+        }
+
+        public int size() {
+            return cumulative.size();
+        }
+
+        public double get(int day) {
+            return cumulative.get(day) - (day > 0 ? cumulative.get(day - 1) : 0);
+        }
+
+        public double sum(int from, int to) {
+            if (to <= from) return 0;
+            return cumulative.get(to - 1) - (from > 0 ? cumulative.get(from - 1) : 0);
+        }
+    }
+
+    private static class SliceCurve extends Curve {
+        private final Curve base;
+        private final int offset;
+        private final int length;
+
+        SliceCurve(Curve base, int offset, int length) {
+            this.base = base;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int size() {
+            return length;
+        }
+
+        public double get(int day) {
+            if (day < 0 || day >= length) throw new IndexOutOfBoundsException("Day " + day + " of " + length);
+            return base.get(offset + day);
+        }
+
+        public double sum(int from, int to) {
+            return base.sum(offset + from, offset + to);
+        }
+
+        public Curve slice(int from, int length) {
+            if (from < 0 || length < 0 || from + length > size())
+                throw new IndexOutOfBoundsException("Days " + from + " to " + (from + length) + " of " + size());
+            return new SliceCurve(base, offset + from, length);
+        }
+    }
+
+    private static class RollingCurve extends Curve {
+        private final Curve base;
+        private final int window;
+
+        RollingCurve(Curve base, int window) {
+            this.base = base;
+            this.window = window;
+        }
+
+        public int size() {
+            return base.size();
+        }
+
+        public double get(int day) {
+            int from = Math.max(0, day - window + 1);
+            return base.sum(from, day + 1) / (day + 1 - from);
+        }
+    }
+
+    private static class NormalisedCurve extends Curve {
+        private final Curve base;
+        private final double min;
+        private final double range;
+
+        NormalisedCurve(Curve base) {
+            this.base = base;
+            double minValue = Double.POSITIVE_INFINITY;
+            double maxValue = Double.NEGATIVE_INFINITY;
+            for (int d = 0; d < base.size(); d++) {
+                minValue = Math.min(minValue, base.get(d));
+                maxValue = Math.max(maxValue, base.get(d));
+            }
+            min = minValue;
+            range = maxValue - minValue;
+        }
+
+        public int size() {
+            return base.size();
+        }
+
+        public double get(int day) {
+            return range > 0 ? (base.get(day) - min) / range : 0;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checkpoint is a snapshot of a GA run taken between generations: the scored
+ * population, the next generation to run, the state of the GA's random number
+ * generator, the Solver's fitness cache and the master seed of its common
+ * random numbers, which the cached results ran on. A run restarted from a checkpoint
+ * carries on exactly where it left off without scoring anything twice.
+ *
+ * Checkpoints are written to a temporary file which is then moved over the old
+ * one, so a crash part way through writing never leaves a broken checkpoint.
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x43564741; // "CVGA"
+    private static final int VERSION = 3;
+
+    final int generation;                                  // The next generation to run
+    final Chromosome[] pop;                                // The scored population
+    final Random random;                                   // The GA's random number generator
+    final Map<EvaluationKey, Evaluation> cache;            // The cached results, least recently used first
+    final Seeds seeds;                                     // The seeds the results ran on, or null if unseeded
+
+    public Checkpoint(int generation, Chromosome[] pop, Random random, Map<EvaluationKey, Evaluation> cache, Seeds seeds) {
+        this.generation = generation;
+        this.pop = pop;
+        this.random = random;
+        this.cache = cache;
+        this.seeds = seeds;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public Chromosome[] getPopulation() {
+        return pop;
+    }
+
+    public Random getRandom() {
+        return random;
+    }
+
+    public Map<EvaluationKey, Evaluation> getCache() {
+        return cache;
+    }
+
+    public Seeds getSeeds() {
+        return seeds;
+    }
+
+    /**
+     * Write this checkpoint to 'filepath', replacing any earlier one.
+     *
+     * @param filepath Where to keep the checkpoint
+     */
+    public void write(String filepath) throws IOException {
+        Path target = Paths.get(filepath);
+        Path tmp = Paths.get(filepath + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(generation);
+
+            // Common random numbers
+            out.writeBoolean(seeds != null);
+            out.writeLong(seeds == null ? 0 : seeds.getMaster());
+
+            // Population, all chromosomes share the same dimensions
+            Pattern shape = pop[0].getPattern();
+            out.writeInt(pop.length);
+            out.writeInt(shape.getLength());
+            out.writeInt(shape.getHeight());
+            for (Chromosome c : pop) {
+                for (float gene : c.getPattern().getGenes()) out.writeFloat(gene);
+                writeResults(out, Evaluation.of(c));
+                out.writeBoolean(c.isAborted());
+            }
+
+            // Random number generator
+            byte[] state = serialise(random);
+            out.writeInt(state.length);
+            out.write(state);
+
+            // Fitness cache
+            out.writeInt(cache.size());
+            for (Map.Entry<EvaluationKey, Evaluation> e : cache.entrySet()) {
+                PolicyParameters p = e.getKey().getParameters();
+                for (int i = 0; i < PolicyParameters.SWITCHES.length; i++) out.writeBoolean(p.getSwitch(i));
+                for (int i = 0; i < PolicyParameters.THRESHOLDS.length; i++) out.writeDouble(p.getThreshold(i));
+                out.writeInt(e.getKey().getSeedGeneration());
+                writeResults(out, e.getValue());
+            }
+
+            // Make sure it has reached the disk before it replaces the last checkpoint, or
+            // a crash just after the move could leave us with neither of them whole
+            out.flush();
+            file.getChannel().force(true);
+        }
+
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Not every file system can move atomically, a plain replace is the next best thing
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Read a checkpoint written by write.
+     *
+     * @param filepath Where the checkpoint was kept
+     * @return The checkpoint
+     */
+    public static Checkpoint read(String filepath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filepath)))) {
+            if (in.readInt() != MAGIC) throw new IOException(filepath + " is not a GA checkpoint");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported checkpoint version " + version);
+            int generation = in.readInt();
+
+            boolean seeded = in.readBoolean();
+            long master = in.readLong();
+            Seeds seeds = seeded ? new Seeds(master) : null;
+
+            int popsize = in.readInt();
+            int xdim = in.readInt();
+            int ydim = in.readInt();
+            Chromosome[] pop = new Chromosome[popsize];
+            for (int p = 0; p < popsize; p++) {
+                pop[p] = new Chromosome(xdim, ydim);
+                for (int g = 0; g < xdim * ydim; g++) pop[p].setGene(g, in.readFloat());
+                readResults(in).applyTo(pop[p]);
+                pop[p].setAborted(in.readBoolean());
+            }
+
+            byte[] state = new byte[in.readInt()];
+            in.readFully(state);
+            Random random = deserialise(state);
+
+            int entries = in.readInt();
+            Map<EvaluationKey, Evaluation> cache = new LinkedHashMap<>();
+            for (int e = 0; e < entries; e++) {
+                boolean[] switches = new boolean[PolicyParameters.SWITCHES.length];
+                double[] thresholds = new double[PolicyParameters.THRESHOLDS.length];
+                for (int i = 0; i < switches.length; i++) switches[i] = in.readBoolean();
+                for (int i = 0; i < thresholds.length; i++) thresholds[i] = in.readDouble();
+                PolicyParameters p = new PolicyParameters(switches, thresholds);
+                cache.put(new EvaluationKey(p, in.readInt()), readResults(in));
+            }
+
+            return new Checkpoint(generation, pop, random, cache, seeds);
+        }
+    }
+
+    private static void writeResults(DataOutputStream out, Evaluation e) throws IOException {
+        out.writeFloat(e.fitness);
+        out.writeFloat(e.infections);
+        out.writeFloat(e.totalInfections);
+        out.writeFloat(e.deaths);
+        out.writeFloat(e.totalDeaths);
+        out.writeFloat(e.iCost);
+        out.writeFloat(e.mCost);
+    }
+
+    private static Evaluation readResults(DataInputStream in) throws IOException {
+        return new Evaluation(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(),
+                in.readFloat(), in.readFloat());
+    }
+
+    // java.util.Random doesn't expose its seed, but it is Serializable and its serial form holds the current state
+    private static byte[] serialise(Random random) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(random);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Random deserialise(byte[] state) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(state))) {
+            return (Random) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Could not restore random number generator", e);
+        }
+    }
+}
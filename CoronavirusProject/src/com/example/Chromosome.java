@@ -1,6 +1,7 @@
 package com.example;
 
 import java.util.ArrayList;
+import java.util.Random;
 
 /**
  * This class is used to store the 'genetic material' that encodes the solution
@@ -23,6 +24,7 @@ public class Chromosome {
     private float totalDeaths;
     private float iCost;
     private float mCost;
+    private boolean aborted = false; // true if scoring gave up early, so the fitness is only a lower bound
 
     /**
      * Creates a random initial solution based on a grid of values 'xdim' by 'ydim'
@@ -34,6 +36,17 @@ public class Chromosome {
         genes = new Pattern(xdim, ydim);
     }
 
+    /**
+     * Creates a random initial solution using values drawn from 'random'
+     *
+     * @param xdim   Length of grid
+     * @param ydim   Height of grid
+     * @param random Where the random gene values come from
+     */
+    public Chromosome(int xdim, int ydim, Random random) {
+        genes = new Pattern(xdim, ydim, random);
+    }
+
     /**
      * Creates a new Chromsome object using 'template' to
      * set the required value (dimensions or problem reference).
@@ -95,6 +108,15 @@ public class Chromosome {
         this.mCost = mCost;
     }
 
+    // Whether the evaluation was abandoned once it could no longer beat the cutoff
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public void setAborted(boolean aborted) {
+        this.aborted = aborted;
+    }
+
     /**
      * Return a duplicate of this Chromosome that can be changed without
      * affecting this one.
@@ -103,6 +125,13 @@ public class Chromosome {
         Chromosome c = new Chromosome(this);
 
         c.fitness = this.fitness;
+        c.infections = this.infections;
+        c.totalInfections = this.totalInfections;
+        c.deaths = this.deaths;
+        c.totalDeaths = this.totalDeaths;
+        c.iCost = this.iCost;
+        c.mCost = this.mCost;
+        c.aborted = this.aborted;
         c.genes = this.genes.clone();
 
         return c;
@@ -141,6 +170,21 @@ public class Chromosome {
         }
     }
 
+    /**
+     * As mutateReal(probability), but using 'random' for every decision so a
+     * seeded GA can be replayed or resumed exactly.
+     *
+     * @param probability The chance of replacing a gene
+     * @param random      Where the random values come from
+     */
+    public void mutateReal(float probability, Random random) {
+        for (int g = 0; g < genes.getSize(); g++) {
+            if (random.nextDouble() < probability) {
+                genes.set(g, random.nextFloat());
+            }
+        }
+    }
+
     /**
      * Swap locations encoded in the genes with the given 'probability' of
      * doing a swap.
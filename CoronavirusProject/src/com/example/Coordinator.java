@@ -0,0 +1,390 @@
+package com.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator scores populations on EvaluationWorker processes, which may be
+ * on this machine or others, instead of on workspaces in this JVM. Workers
+ * connect to it over TCP and say how many workspaces they have. Each
+ * configuration that isn't in the Solver's cache becomes a job holding its
+ * decoded parameters, seeds and abort/racing settings, and jobs are sent to
+ * workers in batches so that each has about two jobs per workspace on hand.
+ *
+ * Workers send a heartbeat whenever they have been quiet for a second. One
+ * that hasn't been heard from for HEARTBEAT_TIMEOUT, or whose connection
+ * drops, is presumed dead and its unfinished jobs go back on the queue for
+ * the other workers. A result that turns up late for a job that has been
+ * re-dispatched, or for a population whose scoring has already failed, is ignored.
+ *
+ * Each worker has its own sender thread, so the bookkeeping done under the
+ * coordinator's lock never waits on a socket: a worker that stops reading
+ * only holds up its own sender, and the heartbeat monitor can still give up on it.
+ */
+public class Coordinator implements Evaluator {
+
+    private static final int JOBS_PER_WORKSPACE = 2;    // Jobs a worker holds at once, so it isn't left waiting for more
+    private static final byte[] SHUTDOWN_MESSAGE = {EvaluationProtocol.SHUTDOWN};
+
+    private final Solver s;
+    private final ServerSocket server;
+    private final int batchSize;                        // Most jobs to send in one message
+    private final ScheduledExecutorService monitor;
+
+    // Guarded by 'this'
+    private final List<Worker> workers = new ArrayList<>();
+    private final Deque<Job> pending = new ArrayDeque<>();     // Jobs no worker has
+    private long nextId = 0;
+    private boolean closed = false;
+
+    // A configuration waiting to be scored, and every chromosome in the population that decodes to it
+    private static class Job {
+        final EvaluationProtocol.Job job;
+        final List<Chromosome> chromosomes = new ArrayList<>();
+        final Round round;
+        boolean done = false;
+
+        Job(EvaluationProtocol.Job job, Round round) {
+            this.job = job;
+            this.round = round;
+        }
+    }
+
+    // One call of scoreAll
+    private static class Round {
+        int remaining;
+        RuntimeException failure;
+    }
+
+    private class Worker {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final int capacity;
+        final String name;
+        final Map<Long, Job> inFlight = new LinkedHashMap<>();
+        final BlockingQueue<byte[]> outbox = new LinkedBlockingQueue<>();  // Messages for the sender to write
+        volatile long lastHeard = System.currentTimeMillis();
+        boolean alive = true;
+        Thread sender;
+
+        Worker(Socket socket, DataInputStream in, DataOutputStream out, int capacity) {
+            this.socket = socket;
+            this.in = in;
+            this.out = out;
+            this.capacity = capacity;
+            this.name = socket.getRemoteSocketAddress().toString();
+        }
+    }
+
+    /**
+     * Listen for workers on 'port'.
+     *
+     * @param s         The solver whose cache and settings we score with
+     * @param port      The port workers connect to
+     * @param batchSize The most jobs to send a worker in one message
+     */
+    public Coordinator(Solver s, int port, int batchSize) throws IOException {
+        this.s = s;
+        this.batchSize = batchSize;
+        server = new ServerSocket(port);
+
+        Thread acceptor = new Thread(this::accept, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "coordinator-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        monitor.scheduleAtFixedRate(this::checkHeartbeats, EvaluationProtocol.HEARTBEAT_INTERVAL,
+                EvaluationProtocol.HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+        System.out.println("Coordinator waiting for workers on port " + server.getLocalPort());
+    }
+
+    /**
+     * Score every chromosome in 'pop' on the workers, waiting for them all to finish.
+     * Chromosomes already in the Solver's cache aren't sent anywhere.
+     */
+    public void scoreAll(Chromosome[] pop) throws FileNotFoundException {
+        // Chromosomes that decode to the same configuration share a job
+        Map<PolicyParameters, List<Chromosome>> configurations = new LinkedHashMap<>();
+        for (Chromosome c : pop) {
+            PolicyParameters parameters = PolicyParameters.fromChromosome(c);
+            if (!s.scoreFromCache(c, parameters))
+                configurations.computeIfAbsent(parameters, p -> new ArrayList<>()).add(c);
+        }
+        if (configurations.isEmpty()) return;
+
+        Round round = new Round();
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("Coordinator has been shut down");
+            for (Map.Entry<PolicyParameters, List<Chromosome>> e : configurations.entrySet()) {
+                Job job = new Job(s.newJob(nextId++, e.getKey()), round);
+                job.chromosomes.addAll(e.getValue());
+                pending.add(job);
+            }
+            round.remaining = configurations.size();
+            dispatch();
+
+            long lastWarning = System.currentTimeMillis();
+            while (round.remaining > 0 && round.failure == null) {
+                try {
+                    wait(EvaluationProtocol.HEARTBEAT_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    abandon(round);
+                    throw new IllegalStateException("Interrupted while scoring population", e);
+                }
+                if (workers.isEmpty() && System.currentTimeMillis() - lastWarning > EvaluationProtocol.HEARTBEAT_TIMEOUT) {
+                    System.out.println("No workers connected, " + round.remaining + " jobs waiting");
+                    lastWarning = System.currentTimeMillis();
+                }
+            }
+        }
+        if (round.failure != null) throw round.failure;
+    }
+
+    /**
+     * @return The port workers connect to
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return How many workspaces the connected workers have between them, at least 1
+     */
+    public synchronized int getCapacity() {
+        int capacity = 0;
+        for (Worker w : workers) capacity += w.capacity;
+        return Math.max(1, capacity);
+    }
+
+    // Hand pending jobs to any worker with room for them. The jobs count as the
+    // worker's as soon as they are queued, so if sending them fails lost() re-queues them
+    private synchronized void dispatch() {
+        for (Worker w : workers) {
+            if (!w.alive) continue;
+            int room = w.capacity * JOBS_PER_WORKSPACE - w.inFlight.size();
+            while (room > 0 && !pending.isEmpty()) {
+                int n = Math.min(Math.min(room, batchSize), pending.size());
+                List<Job> batch = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) batch.add(pending.poll());
+                for (Job job : batch) w.inFlight.put(job.job.id, job);
+                w.outbox.add(jobsMessage(batch));
+                room -= n;
+            }
+        }
+    }
+
+    // A JOBS message holding 'batch', ready for a sender to write
+    private static byte[] jobsMessage(List<Job> batch) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(EvaluationProtocol.JOBS);
+            out.writeInt(batch.size());
+            for (Job job : batch) job.job.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode jobs", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Write whatever is queued for a worker, outside the coordinator's lock, until it is lost or shut down
+    private void send(Worker w) {
+        try {
+            while (true) {
+                byte[] message = w.outbox.take();
+                w.out.write(message);
+                w.out.flush();
+                if (message == SHUTDOWN_MESSAGE) {
+                    close(w.socket);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // The worker has been given up on
+        } catch (IOException e) {
+            lost(w, e.toString());
+        }
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            Socket socket = null;
+            try {
+                socket = server.accept();
+                socket.setTcpNoDelay(true);
+                // Don't let a half open connection hold up the acceptor
+                socket.setSoTimeout((int) EvaluationProtocol.HEARTBEAT_TIMEOUT);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                if (in.readByte() != EvaluationProtocol.HELLO || in.readInt() != EvaluationProtocol.MAGIC)
+                    throw new IOException("not an evaluation worker");
+                int version = in.readInt();
+                if (version != EvaluationProtocol.VERSION) throw new IOException("unsupported protocol version " + version);
+                int capacity = in.readInt();
+                socket.setSoTimeout(0); // From now on the heartbeat monitor looks after it
+
+                Worker w = new Worker(socket, in, out, capacity);
+                w.sender = new Thread(() -> send(w), "coordinator-send-" + w.name);
+                w.sender.setDaemon(true);
+                synchronized (this) {
+                    if (closed) {
+                        socket.close();
+                        return;
+                    }
+                    w.sender.start();
+                    workers.add(w);
+                    System.out.println("Worker " + w.name + " joined with " + capacity + " workspaces");
+                    dispatch();
+                }
+                Thread reader = new Thread(() -> read(w), "coordinator-" + w.name);
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (server.isClosed()) return;
+                System.err.println("Rejected connection: " + e);
+                if (socket != null) close(socket);
+            }
+        }
+    }
+
+    // Read what a worker sends us until its connection goes
+    private void read(Worker w) {
+        try {
+            while (true) {
+                byte type = w.in.readByte();
+                w.lastHeard = System.currentTimeMillis();
+                if (type == EvaluationProtocol.RESULTS) {
+                    int n = w.in.readInt();
+                    List<EvaluationProtocol.Result> results = new ArrayList<>(n);
+                    for (int i = 0; i < n; i++) results.add(EvaluationProtocol.Result.read(w.in));
+                    complete(w, results);
+                } else if (type == EvaluationProtocol.FAILED) {
+                    fail(w, w.in.readLong(), w.in.readUTF());
+                } else if (type != EvaluationProtocol.HEARTBEAT) {
+                    throw new IOException("unexpected message " + type);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            lost(w, "connection closed");
+        } catch (IOException e) {
+            lost(w, e.toString());
+        }
+    }
+
+    private synchronized void complete(Worker w, List<EvaluationProtocol.Result> results) {
+        for (EvaluationProtocol.Result r : results) {
+            Job job = w.inFlight.remove(r.id);
+            // A job we gave up on and sent elsewhere may already have finished
+            if (job == null || job.done) continue;
+            job.done = true;
+            for (Chromosome c : job.chromosomes) {
+                r.evaluation.applyTo(c);
+                c.setAborted(r.aborted);
+            }
+            s.accept(job.chromosomes.get(0), job.job.parameters, job.job.generation, r.replicates);
+            job.round.remaining--;
+        }
+        dispatch();
+        notifyAll();
+    }
+
+    private synchronized void fail(Worker w, long id, String message) {
+        Job job = w.inFlight.remove(id);
+        if (job != null && !job.done) {
+            job.done = true;
+            job.round.failure = new IllegalStateException("Worker " + w.name + " failed to score " + job.job.parameters + ": " + message);
+            abandon(job.round);
+        }
+        dispatch();
+        notifyAll();
+    }
+
+    // Forget the rest of a round scoreAll has given up on. Its chromosomes may be stand ins
+    // the caller reuses, so a result that turns up later mustn't be written into them
+    private synchronized void abandon(Round round) {
+        for (Job job : pending) if (job.round == round) job.done = true;
+        pending.removeIf(job -> job.round == round);
+        for (Worker w : workers) {
+            for (Job job : w.inFlight.values()) if (job.round == round) job.done = true;
+            w.inFlight.values().removeIf(job -> job.round == round);
+        }
+    }
+
+    // Give up on a worker and send its unfinished jobs to the others
+    private synchronized void lost(Worker w, String reason) {
+        if (!w.alive) return;
+        w.alive = false;
+        workers.remove(w);
+        w.sender.interrupt();
+        close(w.socket);
+
+        List<Job> unfinished = new ArrayList<>(w.inFlight.values());
+        w.inFlight.clear();
+        for (int i = unfinished.size() - 1; i >= 0; i--)
+            if (!unfinished.get(i).done) pending.addFirst(unfinished.get(i));
+        if (!closed)
+            System.out.println("Lost worker " + w.name + " (" + reason + "), re-dispatching " + unfinished.size() + " jobs");
+        dispatch();
+        notifyAll();
+    }
+
+    private synchronized void checkHeartbeats() {
+        long now = System.currentTimeMillis();
+        for (Worker w : new ArrayList<>(workers))
+            if (now - w.lastHeard > EvaluationProtocol.HEARTBEAT_TIMEOUT) lost(w, "no heartbeat");
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing more we can do with it
+        }
+    }
+
+    /**
+     * Tell the workers there is no more work and stop listening.
+     */
+    public synchronized void shutdown() {
+        closed = true;
+        monitor.shutdownNow();
+        try {
+            server.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Worker w : workers) {
+            // Its sender closes the connection once everything before this has gone
+            w.alive = false;
+            w.outbox.add(SHUTDOWN_MESSAGE);
+        }
+        workers.clear();
+        notifyAll();
+    }
+}
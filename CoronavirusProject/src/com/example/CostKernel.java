@@ -0,0 +1,180 @@
+package com.example;
+
+import static com.example.ModelSimulation.DEATHS;
+import static com.example.ModelSimulation.INFECTED;
+import static com.example.ModelSimulation.POPULATION;
+
+/**
+ * CostKernel is the usual cost model: the infection cost and the control
+ * method cost of each day, each normalised against its worst case, then
+ * weighted and added together.
+ *
+ * The method cost only depends on the day through the population, so once
+ * the switches, thresholds and compliances of an evaluation are known, both
+ * the cost and its worst case come down to 'perPerson * population + fixed'.
+ * prepare() works those coefficients out once per evaluation, so the loops
+ * over the days are a handful of multiplies and a divide each, over plain
+ * arrays, which the JIT can unroll and keep in registers.
+ */
+public class CostKernel implements CostModel {
+
+    // Control methods with a threshold and a compliance
+    public static final int PPE = 0;
+    public static final int LOCKDOWN = 1;
+    public static final int SOCIAL_DISTANCING = 2;
+    public static final int ISOLATION = 3;
+    public static final int SHIELDING = 4;
+    public static final int METHODS = 5;
+
+    public static final double AVERAGE_DAILY_WAGE = 80.46;
+    public static final double DEATH_COST = 4000;
+    public static final double TEST_AND_TRACE_COST = AVERAGE_DAILY_WAGE * 5;
+    // What each method costs per person per day, in the same order as PPE...SHIELDING
+    static final double[] COST_PER_DAY = {
+            30,                         // PPE
+            AVERAGE_DAILY_WAGE * 3,     // lockdown
+            10,                         // social distancing
+            AVERAGE_DAILY_WAGE,         // isolation
+            AVERAGE_DAILY_WAGE,         // shielding
+    };
+
+    protected final double infectionWeighting;
+    protected final double methodWeighting;
+
+    // The method cost and its worst case are perPerson * population + fixed
+    protected double methodPerPerson;
+    protected double methodFixed;
+    protected double maxPerPerson;
+    protected double maxFixed;
+
+    // The least normMethodCost can be on any day, and the most people there can be on one
+    protected double methodFloor;
+    protected double maxPopulation;
+
+    // Totals from the last call of dailyCosts
+    protected double infectionCost;
+    protected double methodCost;
+
+    /**
+     * @param infectionWeighting How much the infection cost counts for
+     * @param methodWeighting    How much the control method cost counts for
+     */
+    public CostKernel(double infectionWeighting, double methodWeighting) {
+        this.infectionWeighting = infectionWeighting;
+        this.methodWeighting = methodWeighting;
+    }
+
+    public String getName() {
+        return "default";
+    }
+
+    /**
+     * Work out the coefficients of the method cost for 'policy'.
+     */
+    public void prepare(CostPolicy policy) {
+        methodPerPerson = 0;
+        maxPerPerson = 0;
+        for (int m = 0; m < METHODS; m++) {
+            double perPerson = (policy.compliances[m] / 100) * COST_PER_DAY[m];
+            methodPerPerson += policy.on[m] * (1 - (policy.thresholds[m] / 100)) * perPerson;
+            // The worst case has every method on with no threshold
+            maxPerPerson += perPerson;
+        }
+        methodFixed = policy.testAndTraceOn * TEST_AND_TRACE_COST * (1 - (policy.testAndTraceThreshold / 100));
+        maxFixed = TEST_AND_TRACE_COST;
+
+        // normMethodCost only moves one way as the population grows, so its least
+        // value is at one end or the other of the populations there can be
+        maxPopulation = policy.maxPopulation;
+        double atMost = maxPopulation == Double.POSITIVE_INFINITY
+                ? (maxPerPerson > 0 ? methodPerPerson / maxPerPerson : methodFixed / maxFixed)
+                : normMethodCost(maxPopulation);
+        methodFloor = Math.min(normMethodCost(0), atMost);
+    }
+
+    /**
+     * The infection cost of a day, normalised against the worst case where the whole
+     * population is infected (in case populations change drastically, data still the same).
+     */
+    public double normInfectionCost(double infections, double deaths, double population) {
+        double dead = deaths * DEATH_COST;
+        double maxI = population * AVERAGE_DAILY_WAGE + dead;
+        return maxI == 0 ? 0 : (infections * AVERAGE_DAILY_WAGE + dead) / maxI;
+    }
+
+    /**
+     * The control method cost of a day, normalised against the worst case where every
+     * method is always on.
+     */
+    public double normMethodCost(double population) {
+        return (methodPerPerson * population + methodFixed) / (maxPerPerson * population + maxFixed);
+    }
+
+    /**
+     * Every day costs at least its method cost, which is at least methodFloor. Its
+     * infection cost is (I * wage + D * deathCost) / (P * wage + D * deathCost) for the
+     * average infected I, deaths D and population P of that day. No one can be
+     * infected without being there, so I <= P, and adding the same D * deathCost to
+     * the top and bottom only brings the ratio closer to 1, so it is at least I / P,
+     * which is at least I / maxPopulation. Replicates still to come can only add to
+     * the total infected on a day, so I is at least the infections seen so far divided
+     * by the number of replicates. Adding that up over the days gives the bound.
+     */
+    public double lowerBound(double[] totals, int replicates, int days) {
+        // Only holds while neither half of a day's cost can be negative
+        if (infectionWeighting < 0 || methodWeighting < 0) return 0;
+        double bound = days * methodWeighting * methodFloor;
+        if (maxPopulation != Double.POSITIVE_INFINITY && maxPopulation > 0)
+            bound += infectionWeighting * totals[INFECTED] / (replicates * maxPopulation);
+        return bound;
+    }
+
+    public double sumCost(double[][] series, int from, int to) {
+        double[] infections = series[INFECTED];
+        double[] deaths = series[DEATHS];
+        double[] population = series[POPULATION];
+        double total = 0;
+        for (int d = from; d < to; d++) {
+            double p = population[d];
+            double dead = deaths[d] * DEATH_COST;
+            double maxI = p * AVERAGE_DAILY_WAGE + dead;
+            double normI = maxI == 0 ? 0 : (infections[d] * AVERAGE_DAILY_WAGE + dead) / maxI;
+            double normM = (methodPerPerson * p + methodFixed) / (maxPerPerson * p + maxFixed);
+            total += Math.abs(infectionWeighting * normI + methodWeighting * normM);
+        }
+        return total;
+    }
+
+    public double dailyCosts(double[][] series, double[] dailyCost) {
+        double[] infections = series[INFECTED];
+        double[] deaths = series[DEATHS];
+        double[] population = series[POPULATION];
+        double total = 0;
+        double iCost = 0;
+        double mCost = 0;
+        for (int d = 0; d < dailyCost.length; d++) {
+            double p = population[d];
+            double dead = deaths[d] * DEATH_COST;
+            double maxI = p * AVERAGE_DAILY_WAGE + dead;
+            double normI = maxI == 0 ? 0 : (infections[d] * AVERAGE_DAILY_WAGE + dead) / maxI;
+            double normM = (methodPerPerson * p + methodFixed) / (maxPerPerson * p + maxFixed);
+            double i = infectionWeighting * normI;
+            double m = methodWeighting * normM;
+            dailyCost[d] = Math.abs(i + m);
+            total += dailyCost[d];
+            iCost += i;
+            mCost += m;
+        }
+        infectionCost = iCost;
+        methodCost = mCost;
+        return total;
+    }
+
+    public double getInfectionCost() {
+        return infectionCost;
+    }
+
+    public double getMethodCost() {
+        return methodCost;
+    }
+}
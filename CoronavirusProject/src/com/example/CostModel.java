@@ -0,0 +1,63 @@
+package com.example;
+
+/**
+ * A way of costing a run of the model from its daily series (the averages
+ * ModelSimulation keeps, indexed by ModelSimulation.INFECTED, POPULATION and
+ * so on). Several models can cost the same simulated days, so a different
+ * economic assumption can be tried without running the model again, either
+ * alongside the main cost model during an evaluation or afterwards on the
+ * daily averages a sweep recorded (see SweepRescorer).
+ *
+ * A model holds the coefficients of the policy it was last prepared for, so
+ * each workspace needs instances of its own.
+ */
+public interface CostModel {
+
+    String getName();
+
+    /**
+     * Work out whatever the daily costs need from the policy being evaluated.
+     */
+    void prepare(CostPolicy policy);
+
+    /**
+     * @return The total cost of days 'from' up to but not including 'to'
+     */
+    double sumCost(double[][] series, int from, int to);
+
+    /**
+     * Work out the cost of every day into 'dailyCost', keeping the weighted infection
+     * and method costs for getInfectionCost() and getMethodCost().
+     *
+     * @param series    The daily series, each at least as long as 'dailyCost'
+     * @param dailyCost Where to put each day's cost
+     * @return The total cost of all the days
+     */
+    double dailyCosts(double[][] series, double[] dailyCost);
+
+    /**
+     * A lower bound on what dailyCosts will give for the average of 'replicates'
+     * replicates when only some of them, or only the first days of some of them,
+     * have been seen. 'totals' holds the sum of each series over every day and
+     * replicate seen so far; everything still to come could be any run the model
+     * can produce. Returning 0 is always safe, it just means never giving up early.
+     *
+     * @param totals     The sum of each series over everything seen so far
+     * @param replicates The most replicates the average could be taken over
+     * @param days       How many days each replicate runs for
+     * @return A bound on the total cost of all the days
+     */
+    default double lowerBound(double[] totals, int replicates, int days) {
+        return 0;
+    }
+
+    /**
+     * @return The weighted infection cost over all the days of the last call of dailyCosts
+     */
+    double getInfectionCost();
+
+    /**
+     * @return The weighted method cost over all the days of the last call of dailyCosts
+     */
+    double getMethodCost();
+}
@@ -0,0 +1,81 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * The parts of a policy the cost models need: whether each control method is
+ * on, with its threshold and compliance as percentages, indexed by
+ * CostKernel.PPE ... SHIELDING, and the same for test and trace.
+ */
+public class CostPolicy {
+
+    // The compliances beginEvaluation reads back after setInitialConditions
+    public static final double[] INITIAL_COMPLIANCES =
+            compliances(ModelSimulation.PROTECTION_COMPLIANCE, ModelSimulation.ISOLATION_COMPLIANCE);
+
+    final double[] on;
+    final double[] thresholds;
+    final double[] compliances;
+    final double testAndTraceOn;
+    final double testAndTraceThreshold;
+    final double maxPopulation;     // The most people the model can hold on any day, or infinity if unknown
+
+    public CostPolicy(double[] on, double[] thresholds, double[] compliances, double testAndTraceOn, double testAndTraceThreshold) {
+        this(on, thresholds, compliances, testAndTraceOn, testAndTraceThreshold, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param maxPopulation The most people the model can hold on any day, which lets the
+     *                      cost models bound the cost of days they haven't seen yet
+     */
+    public CostPolicy(double[] on, double[] thresholds, double[] compliances, double testAndTraceOn,
+                      double testAndTraceThreshold, double maxPopulation) {
+        this.on = on;
+        this.thresholds = thresholds;
+        this.compliances = compliances;
+        this.testAndTraceOn = testAndTraceOn;
+        this.testAndTraceThreshold = testAndTraceThreshold;
+        this.maxPopulation = maxPopulation;
+    }
+
+    /**
+     * The compliance of each method, indexed by CostKernel.PPE ... SHIELDING, as
+     * beginEvaluation reads them back from the model. It reads the isolation
+     * compliance for lockdown, social distancing and shielding as well.
+     *
+     * @param protection The model's protection-compliance
+     * @param isolation  The model's isolation-compliance
+     */
+    static double[] compliances(double protection, double isolation) {
+        double[] compliances = new double[CostKernel.METHODS];
+        Arrays.fill(compliances, isolation);
+        compliances[CostKernel.PPE] = protection;
+        return compliances;
+    }
+
+    /**
+     * The policy a configuration stands for, e.g. one read back from a sweep.
+     *
+     * @param p           The switches and thresholds
+     * @param compliances The compliance of each method, indexed by CostKernel.PPE ... SHIELDING
+     */
+    public static CostPolicy of(PolicyParameters p, double[] compliances) {
+        double[] on = new double[CostKernel.METHODS];
+        double[] thresholds = new double[CostKernel.METHODS];
+        // PolicyParameters lists them in the chromosome's order, which isn't ours
+        int[] methods = {CostKernel.PPE, CostKernel.LOCKDOWN, CostKernel.SHIELDING, CostKernel.ISOLATION, -1, CostKernel.SOCIAL_DISTANCING};
+        double ttOn = 0;
+        double ttThreshold = 0;
+        for (int i = 0; i < methods.length; i++) {
+            double value = p.getSwitch(i) ? 1 : 0;
+            if (methods[i] < 0) {
+                ttOn = value;
+                ttThreshold = p.getThreshold(i);
+            } else {
+                on[methods[i]] = value;
+                thresholds[methods[i]] = p.getThreshold(i);
+            }
+        }
+        return new CostPolicy(on, thresholds, compliances.clone(), ttOn, ttThreshold);
+    }
+}
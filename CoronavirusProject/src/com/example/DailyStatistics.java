@@ -0,0 +1,89 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * DailyStatistics folds replicates of a set of daily series into a running
+ * mean and variance for each series and day (Welford's method). The buffers
+ * are allocated once and reused for every evaluation, so averaging replicates
+ * creates no garbage, and the variances give us a confidence interval for
+ * every day's average.
+ */
+public class DailyStatistics {
+
+    private final double[][] mean;    // Running mean of each series for each day
+    private final double[][] m2;      // Running sum of squared differences from the mean
+    private int count = 0;            // How many replicates have been added
+
+    /**
+     * @param series    How many series each replicate has
+     * @param days      How many days each series covers
+     */
+    public DailyStatistics(int series, int days) {
+        mean = new double[series][days];
+        m2 = new double[series][days];
+    }
+
+    // Forget every replicate added so far
+    public void reset() {
+        for (int s = 0; s < mean.length; s++) {
+            Arrays.fill(mean[s], 0);
+            Arrays.fill(m2[s], 0);
+        }
+        count = 0;
+    }
+
+    /**
+     * Add one replicate to the running statistics.
+     *
+     * @param values The replicate, indexed by series then day
+     */
+    public void add(double[][] values) {
+        count++;
+        for (int s = 0; s < mean.length; s++) {
+            double[] mu = mean[s];
+            double[] sq = m2[s];
+            double[] x = values[s];
+            for (int d = 0; d < mu.length; d++) {
+                double delta = x[d] - mu[d];
+                mu[d] += delta / count;
+                sq[d] += delta * (x[d] - mu[d]);
+            }
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The daily means of one series. This is the buffer itself rather than a copy,
+     * so it changes as more replicates are added.
+     */
+    public double[] getMeans(int series) {
+        return mean[series];
+    }
+
+    public double getMean(int series, int day) {
+        return mean[series][day];
+    }
+
+    /**
+     * @return The sample variance of one series on one day, or 0 until we have two replicates
+     */
+    public double getVariance(int series, int day) {
+        if (count < 2) return 0;
+        return m2[series][day] / (count - 1);
+    }
+
+    /**
+     * Half the width of the confidence interval for the mean of one series on one day.
+     *
+     * @param confidence The confidence level, e.g. 0.95
+     */
+    public double getHalfWidth(int series, int day, double confidence) {
+        if (count < 2) return Double.POSITIVE_INFINITY;
+        double z = AdaptiveReplication.criticalValue((1 + confidence) / 2);
+        return z * Math.sqrt(getVariance(series, day) / count);
+    }
+}
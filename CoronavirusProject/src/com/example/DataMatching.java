@@ -0,0 +1,210 @@
+package com.example;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * DataMatching compares the model's daily new infections with the NHS daily
+ * case numbers. Runs of the model are shared out over a WorkspacePool and the
+ * average curve is updated as each run finishes, along with its Euclidean
+ * distance from the NHS curve, so we can see how well the average has settled.
+ * Both curves are normalised to between 0 and 1 before they are compared.
+ *
+ * The NHS data comes from a CaseDataset, so it is only read once however many
+ * matches are run. Either the daily cases or the daily deaths can be matched,
+ * starting from any day in the data and optionally smoothed with a rolling mean.
+ */
+public class DataMatching {
+
+    public static final String NHS_DATA = "nhs-covid-data.csv"; // Downloaded from Tableau Public (link in readme file)
+
+    /**
+     * What to match: the NHS curve and the model's list of the same count.
+     */
+    public enum Target {
+        CASES("infection-log"),
+        DEATHS("death-log");
+
+        final String log;   // The list advance-matching keeps in the model
+
+        Target(String log) {
+            this.log = log;
+        }
+
+        CaseDataset.Curve curve(CaseDataset data) {
+            // The NHS deaths are cumulative, but the model's are per day
+            return this == CASES ? data.column(CaseDataset.Column.DAILY_CASES) : data.dailyDeaths();
+        }
+    }
+
+    private final WorkspacePool pool;
+    private final Seeds seeds;          // Seeds for each run, or null to leave NetLogo unseeded
+    private Target matched = Target.CASES;  // What we match
+    private LocalDate start = null;     // The first day of NHS data to match, or null for the first in the file
+    private int window = 1;             // Days in the rolling mean of the NHS data, 1 for none
+
+    // The runs so far
+    private double[][] results;
+    private double[] mean;
+    private int finished;
+
+    /**
+     * @param pool  The workspaces to run the model on
+     * @param seeds Where each run's seed comes from, or null for unseeded runs
+     */
+    public DataMatching(WorkspacePool pool, Seeds seeds) {
+        this.pool = pool;
+        this.seeds = seeds;
+    }
+
+    /**
+     * Choose what to match.
+     *
+     * @param target Whether to match cases or deaths
+     * @param start  The first day of NHS data to match, or null for the first in the file
+     * @param window How many days' rolling mean to take of the NHS data, 1 for none
+     */
+    public void setTarget(Target target, LocalDate start, int window) {
+        matched = target;
+        this.start = start;
+        this.window = window;
+    }
+
+    /**
+     * Read the first 'noDays' days of daily cases from the NHS data, normalised to between 0 and 1.
+     *
+     * @param filepath The NHS csv file
+     * @param noDays   How many days to read
+     */
+    public static double[] readTarget(String filepath, int noDays) throws IOException {
+        return readTarget(filepath, noDays, Target.CASES, null, 1);
+    }
+
+    /**
+     * Read 'noDays' days of the NHS data, normalised to between 0 and 1.
+     *
+     * @param filepath The NHS csv file
+     * @param noDays   How many days to read
+     * @param target   Whether to read cases or deaths
+     * @param start    The first day to read, or null for the first in the file
+     * @param window   How many days' rolling mean to take, 1 for none
+     */
+    public static double[] readTarget(String filepath, int noDays, Target target, LocalDate start, int window) throws IOException {
+        CaseDataset data = CaseDataset.load(filepath);
+        // Smooth before slicing, so the first days' means can reach back before 'start'
+        return data.range(target.curve(data).rolling(window), start, noDays).normalised().toArray();
+    }
+
+    /**
+     * The Euclidean distance between 'target' and 'curve' once 'curve' has been
+     * normalised to between 0 and 1.
+     */
+    public static double distance(double[] target, double[] curve) {
+        double minValue = Double.POSITIVE_INFINITY;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        for (double v : curve) {
+            minValue = Math.min(minValue, v);
+            maxValue = Math.max(maxValue, v);
+        }
+
+        // A flat curve (e.g. nobody was ever infected) normalises to all zeros
+        double range = maxValue - minValue;
+        double sum = 0;
+        for (int d = 0; d < target.length; d++) {
+            double normalised = range > 0 ? (curve[d] - minValue) / range : 0;
+            sum += Math.pow(target[d] - normalised, 2);
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Run the model 'noRuns' times for 'noDays' days, compare the average new
+     * infections (or deaths) with the NHS data and write both curves and every run to 'filepath'.
+     *
+     * @param noRuns   How many runs to average
+     * @param noDays   How many days to compare
+     * @param filepath Where to write the results
+     * @return The Euclidean distance between the normalised curves
+     */
+    public double match(int noRuns, int noDays, String filepath) throws IOException {
+        double[] target = readTarget(Solver.projectPath + NHS_DATA, noDays, matched, start, window);
+        results = new double[noRuns][];
+        mean = new double[noDays];
+        finished = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(pool.size(), r -> {
+            Thread t = new Thread(r, "data-matching");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> runs = new ArrayList<>(noRuns);
+            for (int i = 0; i < noRuns; i++) {
+                int run = i;
+                runs.add(executor.submit(() -> {
+                    ModelSimulation ms = pool.acquire();
+                    double[] infections;
+                    // The pool may be the Solver's, so leave its workspace seeded as we found it
+                    Seeds previous = ms.getSeeds();
+                    int previousGeneration = ms.getSeedGeneration();
+                    try {
+                        ms.setSeeds(seeds, 0);
+                        ms.setParameter("number-people", 250);
+                        infections = ms.runMatching(noDays, run, matched.log);
+                    } finally {
+                        ms.setSeeds(previous, previousGeneration);
+                        pool.release(ms);
+                    }
+                    add(run, infections, target);
+                    return null;
+                }));
+            }
+            for (Future<?> run : runs) join(run);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double euclideanDist = distance(target, mean);
+        System.out.println("The Euclidean Distance is: " + euclideanDist);
+
+        // Print results to excel file
+        try (PrintWriter out = new PrintWriter(new FileWriter(filepath))) {
+            for (int i = 0; i < noDays; i++) {
+                out.print(mean[i] + "\t" + target[i] + "\t");
+                for (int j = 0; j < noRuns; j++) {
+                    out.print("\t" + results[j][i]);
+                }
+                out.println();
+            }
+            out.println("\n" + euclideanDist);
+        }
+        return euclideanDist;
+    }
+
+    // Fold a finished run into the average curve and report how far it now is from the target
+    private synchronized void add(int run, double[] infections, double[] target) {
+        results[run] = infections;
+        finished++;
+        for (int d = 0; d < mean.length; d++) mean[d] += (infections[d] - mean[d]) / finished;
+        System.out.println(String.format("Run %d (%d finished), distance %.5f", run + 1, finished, distance(target, mean)));
+    }
+
+    private static void join(Future<?> run) {
+        try {
+            run.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while matching data", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Run failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * DesignGenerator produces space-filling sets of chromosomes for a parameter
+ * sweep, which cover the parameter space far more evenly than random ones.
+ * It can make a Latin hypercube, where each parameter's range is cut into as
+ * many strips as there are points and every strip gets exactly one point, or
+ * a Sobol sequence scrambled with a random digital shift, which fills the
+ * space evenly however many points are taken from it.
+ *
+ * The first six genes are switches, so they are snapped to 0 or 1. Points
+ * that decode to a configuration we have already produced are skipped, using
+ * a hash set of their PolicyParameters. Points are handed out a batch at a
+ * time so large designs can be fed to the Solver as they are generated.
+ */
+public class DesignGenerator {
+
+    public enum Kind {LATIN_HYPERCUBE, SOBOL}
+
+    // Joe and Kuo direction numbers for Sobol dimensions 2 onwards: degree s, coefficients a, initial m_1..m_s
+    private static final int[][] SOBOL_PARAMETERS = {
+            {1, 0, 1},
+            {2, 1, 1, 3},
+            {3, 1, 1, 3, 1},
+            {3, 2, 1, 1, 1},
+            {4, 1, 1, 1, 3, 3},
+            {4, 4, 1, 3, 5, 13},
+            {5, 2, 1, 1, 5, 5, 17},
+            {5, 4, 1, 1, 5, 5, 5},
+            {5, 7, 1, 1, 7, 11, 19},
+            {5, 11, 1, 1, 5, 1, 1},
+            {5, 13, 1, 1, 1, 3, 11},
+            {5, 14, 1, 3, 5, 5, 31},
+    };
+    public static final int MAX_SOBOL_DIMENSIONS = SOBOL_PARAMETERS.length + 1;
+
+    private final Kind kind;
+    private final int points;       // How many points the design has
+    private final int dims;         // How many genes each point has
+    private final Set<PolicyParameters> seen = new HashSet<>();
+    private int next = 0;           // The index of the next point to hand out
+    private int duplicates = 0;     // Points skipped because we had already produced their configuration
+
+    private float[][] lhs;          // The whole Latin hypercube, worked out up front
+    private int[][] direction;      // Sobol direction numbers for each dimension
+    private int[] shift;            // The random digital shift for each dimension
+    private int[] sobol;            // The current Sobol point before shifting
+
+    /**
+     * @param kind   Which sort of design to make
+     * @param points How many points the design has, before duplicates are removed
+     * @param dims   How many genes each chromosome has
+     * @param random Where the randomisation comes from
+     */
+    public DesignGenerator(Kind kind, int points, int dims, Random random) {
+        this.kind = kind;
+        this.points = points;
+        this.dims = dims;
+        if (kind == Kind.LATIN_HYPERCUBE) buildLatinHypercube(random);
+        else buildSobol(random);
+    }
+
+    private void buildLatinHypercube(Random random) {
+        lhs = new float[points][dims];
+        int[] strip = new int[points];
+        for (int d = 0; d < dims; d++) {
+            // Shuffle which strip each point falls in for this gene
+            for (int i = 0; i < points; i++) strip[i] = i;
+            for (int i = points - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = strip[i];
+                strip[i] = strip[j];
+                strip[j] = tmp;
+            }
+            for (int i = 0; i < points; i++)
+                lhs[i][d] = (float) ((strip[i] + random.nextDouble()) / points);
+        }
+    }
+
+    private void buildSobol(Random random) {
+        if (dims > MAX_SOBOL_DIMENSIONS)
+            throw new IllegalArgumentException("Sobol designs only go up to " + MAX_SOBOL_DIMENSIONS + " dimensions");
+
+        direction = new int[dims][32];
+        for (int k = 0; k < 32; k++) direction[0][k] = 1 << (31 - k); // The first dimension is van der Corput
+        for (int d = 1; d < dims; d++) {
+            int[] p = SOBOL_PARAMETERS[d - 1];
+            int s = p[0];
+            int a = p[1];
+            int[] v = direction[d];
+            for (int k = 0; k < s; k++) v[k] = p[2 + k] << (31 - k);
+            for (int k = s; k < 32; k++) {
+                v[k] = v[k - s] ^ (v[k - s] >>> s);
+                for (int j = 1; j < s; j++)
+                    if (((a >>> (s - 1 - j)) & 1) == 1) v[k] ^= v[k - j];
+            }
+        }
+
+        shift = new int[dims];
+        for (int d = 0; d < dims; d++) shift[d] = random.nextInt();
+        sobol = new int[dims];
+    }
+
+    /**
+     * @return True while there are points left in the design
+     */
+    public boolean hasNext() {
+        return next < points;
+    }
+
+    /**
+     * Hand out up to 'size' more chromosomes, skipping any that decode to a
+     * configuration we have already handed out.
+     *
+     * @param size The most chromosomes to return
+     * @return The next chromosomes, fewer than 'size' only at the end of the design
+     */
+    public Chromosome[] nextBatch(int size) {
+        Chromosome[] batch = new Chromosome[size];
+        int filled = 0;
+        while (filled < size && hasNext()) {
+            Chromosome c = toChromosome(nextPoint());
+            if (seen.add(PolicyParameters.fromChromosome(c))) batch[filled++] = c;
+            else duplicates++;
+        }
+        if (filled == size) return batch;
+        Chromosome[] last = new Chromosome[filled];
+        System.arraycopy(batch, 0, last, 0, filled);
+        return last;
+    }
+
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    private float[] nextPoint() {
+        int i = next++;
+        if (kind == Kind.LATIN_HYPERCUBE) return lhs[i];
+
+        // Gray code order: each point differs from the last in the direction of the lowest zero bit of i
+        float[] x = new float[dims];
+        if (i > 0) {
+            int c = Integer.numberOfTrailingZeros(~(i - 1));
+            for (int d = 0; d < dims; d++) sobol[d] ^= direction[d][c];
+        }
+        for (int d = 0; d < dims; d++)
+            x[d] = (float) (((sobol[d] ^ shift[d]) >>> 8) / (double) (1 << 24)); // 24 bits fit in a float exactly
+        return x;
+    }
+
+    // Turn a point into a chromosome, snapping the switch genes to 0 or 1
+    private Chromosome toChromosome(float[] x) {
+        Chromosome c = new Chromosome(dims, 1);
+        for (int g = 0; g < dims; g++) {
+            if (g < PolicyParameters.SWITCHES.length) c.setGene(g, x[g] >= 0.5f ? 1.0f : 0.0f);
+            else c.setGene(g, x[g]);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example;
+
+/**
+ * The outcome of scoring a chromosome: its fitness and the statistics the
+ * simulation recorded about it. Keeping them together lets us hand the same
+ * result to any chromosome that decodes to the same configuration.
+ */
+public class Evaluation {
+
+    final float fitness;
+    final float infections;
+    final float totalInfections;
+    final float deaths;
+    final float totalDeaths;
+    final float iCost;
+    final float mCost;
+
+    public Evaluation(float fitness, float infections, float totalInfections, float deaths, float totalDeaths, float iCost, float mCost) {
+        this.fitness = fitness;
+        this.infections = infections;
+        this.totalInfections = totalInfections;
+        this.deaths = deaths;
+        this.totalDeaths = totalDeaths;
+        this.iCost = iCost;
+        this.mCost = mCost;
+    }
+
+    /**
+     * Take a copy of the results stored in a chromosome that has just been scored.
+     */
+    public static Evaluation of(Chromosome c) {
+        return new Evaluation(c.getFitness(), c.getInfections(), c.getTotalInfections(), c.getDeaths(),
+                c.getTotalDeaths(), c.getICost(), c.getMCost());
+    }
+
+    /**
+     * Copy these results into 'c' as if it had been scored itself.
+     */
+    public void applyTo(Chromosome c) {
+        c.setFitness(fitness);
+        c.setInfections(infections);
+        c.setTotalInfections(totalInfections);
+        c.setDeaths(deaths);
+        c.setTotalDeaths(totalDeaths);
+        c.setICost(iCost);
+        c.setMCost(mCost);
+        c.setAborted(false);
+    }
+
+    public float getFitness() {
+        return fitness;
+    }
+}
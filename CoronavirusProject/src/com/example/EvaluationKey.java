@@ -0,0 +1,50 @@
+package com.example;
+
+/**
+ * EvaluationKey is what the Solver files a result under: the configuration
+ * that was scored and, when replicates are seeded with common random numbers,
+ * the generation whose seeds they ran with. Every chromosome in a generation
+ * has to be compared on that generation's seeds, so a result run on another
+ * generation's seeds mustn't stand in for it.
+ */
+public class EvaluationKey {
+
+    public static final int UNSEEDED = -1;     // The generation of a result whose replicates weren't seeded
+
+    private final PolicyParameters parameters;
+    private final int seedGeneration;
+
+    /**
+     * @param parameters     The configuration
+     * @param seedGeneration The generation whose seeds were used, or UNSEEDED
+     */
+    public EvaluationKey(PolicyParameters parameters, int seedGeneration) {
+        this.parameters = parameters;
+        this.seedGeneration = seedGeneration;
+    }
+
+    public PolicyParameters getParameters() {
+        return parameters;
+    }
+
+    public int getSeedGeneration() {
+        return seedGeneration;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EvaluationKey)) return false;
+        EvaluationKey other = (EvaluationKey) o;
+        return seedGeneration == other.seedGeneration && parameters.equals(other.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * parameters.hashCode() + seedGeneration;
+    }
+
+    public String toString() {
+        return seedGeneration == UNSEEDED ? parameters.toString() : parameters + " @" + seedGeneration;
+    }
+}
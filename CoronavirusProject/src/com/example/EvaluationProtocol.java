@@ -0,0 +1,155 @@
+package com.example;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The messages a Coordinator and its EvaluationWorkers send each other over
+ * TCP. Every message is a single type byte followed by its fields, written
+ * with DataOutputStream (big endian).
+ *
+ *   HELLO      worker to coordinator: int MAGIC, int VERSION, int capacity (how many workspaces it has)
+ *   JOBS       coordinator to worker: int n, then n jobs
+ *   RESULTS    worker to coordinator: int n, then n results
+ *   FAILED     worker to coordinator: long job id, UTF message
+ *   HEARTBEAT  worker to coordinator, sent whenever the worker has had nothing else to say for a while
+ *   SHUTDOWN   coordinator to worker: no more work is coming
+ *
+ * Job:    long id, byte switches (bit i set if switch i is on), double[THRESHOLDS] thresholds,
+ *         byte seeded, long master seed, int generation, int loops, double cutoff,
+ *         int min replicates (0 unless racing), int max replicates, double confidence, float threshold
+ * Result: long id, byte aborted, int replicates, float fitness, infections, total infections,
+ *         deaths, total deaths, iCost, mCost
+ */
+final class EvaluationProtocol {
+
+    static final int MAGIC = 0x43564556;    // "CVEV"
+    static final int VERSION = 1;
+
+    static final byte HELLO = 1;
+    static final byte JOBS = 2;
+    static final byte RESULTS = 3;
+    static final byte FAILED = 4;
+    static final byte HEARTBEAT = 5;
+    static final byte SHUTDOWN = 6;
+
+    static final int DEFAULT_PORT = 9123;
+    static final long HEARTBEAT_INTERVAL = 1000;    // Milliseconds a worker may stay quiet for
+    static final long HEARTBEAT_TIMEOUT = 10000;    // Milliseconds before a quiet worker is presumed dead
+
+    private EvaluationProtocol() {
+    }
+
+    /**
+     * One configuration to evaluate, with everything a worker needs to score
+     * it the same way the Solver would.
+     */
+    static class Job {
+        final long id;
+        final PolicyParameters parameters;
+        final Seeds seeds;              // Null to leave NetLogo unseeded
+        final int generation;
+        final int loops;
+        final double cutoff;
+        final int minReplicates;        // 0 for a fixed number of replicates
+        final int maxReplicates;
+        final double confidence;
+        final float threshold;
+
+        Job(long id, PolicyParameters parameters, Seeds seeds, int generation, int loops, double cutoff,
+            AdaptiveReplication racing, float threshold) {
+            this(id, parameters, seeds, generation, loops, cutoff,
+                    racing == null ? 0 : racing.getMinReplicates(),
+                    racing == null ? 0 : racing.getMaxReplicates(),
+                    racing == null ? 0 : racing.getConfidence(), threshold);
+        }
+
+        private Job(long id, PolicyParameters parameters, Seeds seeds, int generation, int loops, double cutoff,
+                    int minReplicates, int maxReplicates, double confidence, float threshold) {
+            this.id = id;
+            this.parameters = parameters;
+            this.seeds = seeds;
+            this.generation = generation;
+            this.loops = loops;
+            this.cutoff = cutoff;
+            this.minReplicates = minReplicates;
+            this.maxReplicates = maxReplicates;
+            this.confidence = confidence;
+            this.threshold = threshold;
+        }
+
+        AdaptiveReplication getRacing() {
+            return minReplicates == 0 ? null : new AdaptiveReplication(minReplicates, maxReplicates, confidence);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(id);
+            int bits = 0;
+            for (int i = 0; i < PolicyParameters.SWITCHES.length; i++) if (parameters.getSwitch(i)) bits |= 1 << i;
+            out.writeByte(bits);
+            for (int i = 0; i < PolicyParameters.THRESHOLDS.length; i++) out.writeDouble(parameters.getThreshold(i));
+            out.writeBoolean(seeds != null);
+            out.writeLong(seeds == null ? 0 : seeds.getMaster());
+            out.writeInt(generation);
+            out.writeInt(loops);
+            out.writeDouble(cutoff);
+            out.writeInt(minReplicates);
+            out.writeInt(maxReplicates);
+            out.writeDouble(confidence);
+            out.writeFloat(threshold);
+        }
+
+        static Job read(DataInputStream in) throws IOException {
+            long id = in.readLong();
+            int bits = in.readByte();
+            boolean[] switches = new boolean[PolicyParameters.SWITCHES.length];
+            for (int i = 0; i < switches.length; i++) switches[i] = (bits & (1 << i)) != 0;
+            double[] thresholds = new double[PolicyParameters.THRESHOLDS.length];
+            for (int i = 0; i < thresholds.length; i++) thresholds[i] = in.readDouble();
+            boolean seeded = in.readBoolean();
+            long master = in.readLong();
+            return new Job(id, new PolicyParameters(switches, thresholds), seeded ? new Seeds(master) : null,
+                    in.readInt(), in.readInt(), in.readDouble(), in.readInt(), in.readInt(), in.readDouble(), in.readFloat());
+        }
+    }
+
+    /**
+     * The outcome of a job.
+     */
+    static class Result {
+        final long id;
+        final Evaluation evaluation;
+        final boolean aborted;
+        final int replicates;           // How many runs of the model it took
+
+        Result(long id, Evaluation evaluation, boolean aborted, int replicates) {
+            this.id = id;
+            this.evaluation = evaluation;
+            this.aborted = aborted;
+            this.replicates = replicates;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(id);
+            out.writeBoolean(aborted);
+            out.writeInt(replicates);
+            out.writeFloat(evaluation.fitness);
+            out.writeFloat(evaluation.infections);
+            out.writeFloat(evaluation.totalInfections);
+            out.writeFloat(evaluation.deaths);
+            out.writeFloat(evaluation.totalDeaths);
+            out.writeFloat(evaluation.iCost);
+            out.writeFloat(evaluation.mCost);
+        }
+
+        static Result read(DataInputStream in) throws IOException {
+            long id = in.readLong();
+            boolean aborted = in.readBoolean();
+            int replicates = in.readInt();
+            Evaluation e = new Evaluation(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(),
+                    in.readFloat(), in.readFloat(), in.readFloat());
+            return new Result(id, e, aborted, replicates);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EvaluationWorker scores jobs for a Coordinator in another process, possibly
+ * on another machine. It opens its own WorkspacePool, connects to the
+ * coordinator, says how many workspaces it has and then scores each job it is
+ * sent on the next free workspace, exactly as the Solver would score it
+ * locally. Results are sent back in batches by a single sender thread, which
+ * also sends a heartbeat whenever it has been quiet for a second so the
+ * coordinator knows we are still working on long jobs.
+ *
+ * Start one per machine (or several on one machine, to spread NetLogo's heap):
+ *   java com.example.EvaluationWorker [host] [port] [workspaces] [model folder]
+ */
+public class EvaluationWorker {
+
+    private final WorkspacePool pool;
+    private final ExecutorService executor;
+    private final BlockingQueue<Object> outbox = new LinkedBlockingQueue<>();  // Results and failures to send
+
+    // A job that went wrong, for the coordinator to report
+    private static class Failure {
+        final long id;
+        final String message;
+
+        Failure(long id, String message) {
+            this.id = id;
+            this.message = message;
+        }
+    }
+
+    public EvaluationWorker(WorkspacePool pool) {
+        this.pool = pool;
+        executor = Executors.newFixedThreadPool(pool.size(), r -> {
+            Thread t = new Thread(r, "worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : EvaluationProtocol.DEFAULT_PORT;
+        int workspaces = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        String folder = args.length > 3 ? args[3] : Solver.projectPath;
+
+        WorkspacePool pool = new WorkspacePool(folder, "covid-model.nlogo", workspaces);
+        EvaluationWorker worker = new EvaluationWorker(pool);
+        try {
+            worker.run(host, port);
+        } finally {
+            worker.shutdown();
+            pool.close();
+        }
+        System.out.println("Finished.");
+        System.exit(0);
+    }
+
+    /**
+     * Connect to the coordinator at 'host':'port', waiting for it to start if need
+     * be, and score whatever it sends until it shuts down or goes away.
+     */
+    public void run(String host, int port) throws IOException {
+        Socket socket = connect(host, port);
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        out.writeByte(EvaluationProtocol.HELLO);
+        out.writeInt(EvaluationProtocol.MAGIC);
+        out.writeInt(EvaluationProtocol.VERSION);
+        out.writeInt(pool.size());
+        out.flush();
+        System.out.println("Connected to " + host + ":" + port + " with " + pool.size() + " workspaces");
+
+        Thread sender = new Thread(() -> send(out), "worker-sender");
+        sender.setDaemon(true);
+        sender.start();
+
+        int jobs = 0;
+        try {
+            while (true) {
+                byte type = in.readByte();
+                if (type == EvaluationProtocol.SHUTDOWN) break;
+                if (type != EvaluationProtocol.JOBS) throw new IOException("Unexpected message " + type);
+                int n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    EvaluationProtocol.Job job = EvaluationProtocol.Job.read(in);
+                    executor.submit(() -> score(job));
+                }
+                jobs += n;
+            }
+        } catch (EOFException | SocketException e) {
+            System.out.println("Lost the coordinator: " + e);
+        } finally {
+            sender.interrupt();
+            socket.close();
+        }
+        System.out.println("Received " + jobs + " jobs");
+    }
+
+    // Keep trying until the coordinator is listening
+    private static Socket connect(String host, int port) throws IOException {
+        while (true) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException e) {
+                System.out.println("Waiting for a coordinator on " + host + ":" + port);
+                try {
+                    Thread.sleep(EvaluationProtocol.HEARTBEAT_INTERVAL * 2);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Score a job on the next free workspace, the same way Solver.simulate does
+    private void score(EvaluationProtocol.Job job) {
+        ModelSimulation ms;
+        try {
+            ms = pool.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            ms.setSeeds(job.seeds, job.generation);
+            ms.setInitialConditions();
+            job.parameters.applyTo(ms);
+
+            Chromosome c = new Chromosome(PolicyParameters.NUM_PARAMETERS, 1);
+            AdaptiveReplication racing = job.getRacing();
+            float score = racing != null ? racing.evaluate(ms, c, job.threshold, job.cutoff)
+                    : ms.evaluate(job.loops, c, job.cutoff);
+            c.setFitness(score);
+            outbox.add(new EvaluationProtocol.Result(job.id, Evaluation.of(c), c.isAborted(), ms.getLoopsRun()));
+        } catch (Exception e) {
+            StringWriter trace = new StringWriter();
+            e.printStackTrace(new PrintWriter(trace));
+            System.err.println(trace);
+            outbox.add(new Failure(job.id, e.toString()));
+        } finally {
+            pool.release(ms);
+        }
+    }
+
+    // Send results as they finish, batching any that finish together, and heartbeats in between
+    private void send(DataOutputStream out) {
+        List<Object> batch = new ArrayList<>();
+        List<EvaluationProtocol.Result> results = new ArrayList<>();
+        try {
+            while (true) {
+                Object first = outbox.poll(EvaluationProtocol.HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    out.writeByte(EvaluationProtocol.HEARTBEAT);
+                    out.flush();
+                    continue;
+                }
+                batch.clear();
+                batch.add(first);
+                outbox.drainTo(batch);
+
+                results.clear();
+                for (Object o : batch) {
+                    if (o instanceof EvaluationProtocol.Result) {
+                        results.add((EvaluationProtocol.Result) o);
+                    } else {
+                        Failure f = (Failure) o;
+                        out.writeByte(EvaluationProtocol.FAILED);
+                        out.writeLong(f.id);
+                        out.writeUTF(f.message);
+                    }
+                }
+                if (!results.isEmpty()) {
+                    out.writeByte(EvaluationProtocol.RESULTS);
+                    out.writeInt(results.size());
+                    for (EvaluationProtocol.Result r : results) r.write(out);
+                }
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            // We have been told to stop
+        } catch (IOException e) {
+            System.err.println("Could not send results: " + e);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
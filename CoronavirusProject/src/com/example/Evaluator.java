@@ -0,0 +1,25 @@
+package com.example;
+
+import java.io.FileNotFoundException;
+
+/**
+ * Something that can score a whole population for the Solver: threads
+ * sharing a local WorkspacePool (ParallelEvaluator) or worker processes
+ * connected to a Coordinator.
+ */
+public interface Evaluator {
+
+    /**
+     * Score every chromosome in 'pop' and wait for them all to finish.
+     *
+     * @param pop The chromosomes to score
+     */
+    void scoreAll(Chromosome[] pop) throws FileNotFoundException;
+
+    /**
+     * @return How many chromosomes can be scored at once
+     */
+    int getCapacity();
+
+    void shutdown();
+}
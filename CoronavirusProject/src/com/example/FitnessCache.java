@@ -0,0 +1,77 @@
+package com.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * FitnessCache remembers the most recent evaluations so that a configuration we
+ * have already simulated is not simulated again. Once it holds 'capacity'
+ * entries, the least recently used one is dropped to make room. It is safe to
+ * share between the threads of a ParallelEvaluator.
+ *
+ * @param <K> The key type, which must implement equals and hashCode
+ */
+public class FitnessCache<K> {
+
+    private final LinkedHashMap<K, Evaluation> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param capacity The most entries to keep
+     */
+    public FitnessCache(int capacity) {
+        // Access order, so the eldest entry is the least recently used
+        entries = new LinkedHashMap<K, Evaluation>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Evaluation> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param key The configuration to look up
+     * @return The stored evaluation, or null if we haven't seen it
+     */
+    public synchronized Evaluation get(K key) {
+        Evaluation e = entries.get(key);
+        if (e == null) misses++;
+        else hits++;
+        return e;
+    }
+
+    public synchronized void put(K key, Evaluation e) {
+        entries.put(key, e);
+    }
+
+    /**
+     * @return A copy of every entry, least recently used first
+     */
+    public synchronized Map<K, Evaluation> snapshot() {
+        return new LinkedHashMap<>(entries);
+    }
+
+    /**
+     * Add every entry in 'saved', e.g. from a snapshot taken by an earlier run.
+     */
+    public synchronized void restore(Map<K, Evaluation> saved) {
+        entries.putAll(saved);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized String toString() {
+        return String.format("Cache %d entries, %d hits, %d misses", entries.size(), hits, misses);
+    }
+}
@@ -1,7 +1,10 @@
 package com.example;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * @author David
@@ -9,6 +12,49 @@ import java.util.ArrayList;
  */
 public class GA {
 
+    public static final int SWEEP_BATCH = 256;  // How many sweep points to score at once
+
+    private Random random = new Random();   // Every random choice the GA makes comes from here
+    private String checkpointFile = null;   // Where to save the run between generations, or null not to
+    private int checkpointEvery = 1;        // How many generations between checkpoints
+    private Surrogate surrogate = null;     // Screens children before they are simulated, or null not to
+    private int candidates = 1;             // How many children to breed for each place when screening
+
+    /**
+     * Use 'random' for every random choice, e.g. a seeded generator to make a run repeatable.
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Screen children with a surrogate: breed 'candidates' children for each place
+     * in the next generation and only keep the one with the greatest expected improvement.
+     *
+     * @param surrogate  The surrogate to screen with, or null to stop screening
+     * @param candidates How many children to breed for each place
+     */
+    public void setSurrogate(Surrogate surrogate, int candidates) {
+        this.surrogate = surrogate;
+        this.candidates = Math.max(candidates, 1);
+    }
+
+    /**
+     * Save the population to 'filepath' every 'every' generations so that a run that
+     * dies part way through can be picked up again with resumeNetLogo.
+     *
+     * @param filepath Where to keep the checkpoint, or null to stop checkpointing
+     * @param every    How many generations between checkpoints
+     */
+    public void setCheckpoint(String filepath, int every) {
+        checkpointFile = filepath;
+        checkpointEvery = Math.max(every, 1);
+    }
+
     /**
      * evolvePattern attempts to work out what a target pattern is by evolving
      * a population of solutions over a number of generations. It starts with an
@@ -37,77 +83,261 @@ public class GA {
         // don't want to end up with the whole population or
         // we will just be hill climbing in disguise.
 
-        Chromosome[] pop;        // The parent population
-        Chromosome[] child;    // The child population that will replace the above
+        // Initialise our parent population with some random solutions,
+        // each a 1 dimensional array to hold NetLogo parameters
+        Population pop = new Population(popsize, parameters);
+        pop.randomise(random);
 
-        // Initialise our population
-        pop = new Chromosome[popsize];
-        child = new Chromosome[popsize];
+        // Score our population, there is nothing to race against yet
+        s.setSelectionThreshold(Float.NaN);
+        s.setAbortCutoff(Float.POSITIVE_INFINITY);
+        s.setSeedGeneration(0);
+        score(s, pop);
+        checkpoint(s, pop, 0);
 
-        // Create some random solutions
-        for (int p = 0; p < popsize; p++)
-            pop[p] = new Chromosome(parameters, 1); // Create a 1 dimensional array to hold NetLogo parameters
+        return evolve(s, pop, 0, generations, mutationRate, tournamentSize);
+    }
 
-        // Score our population
-        for (int p = 0; p < popsize; p++)
-            s.scoreNetLogoSolution(pop[p]);
+    /**
+     * Carry on a run of evolveNetLogo from a checkpoint. The population in the
+     * checkpoint has already been scored, so we go straight on to breeding the
+     * next generation with the random number generator as it was when we stopped.
+     *
+     * @param s              A reference to solver which will give us a score
+     * @param cp             The checkpoint to carry on from
+     * @param generations    How many generations the whole run should last
+     * @param mutationRate   The mutation rate
+     * @param tournamentSize How many solutions to include in each tournament
+     * @return The best solution it has evolved
+     */
+    public Pattern resumeNetLogo(Solver s, Checkpoint cp, int generations, float mutationRate, int tournamentSize) throws FileNotFoundException {
+        random = cp.getRandom();
+        s.getCache().restore(cp.getCache());
+        learn(s, cp.getPopulation());
+        System.out.println("Resuming at generation " + cp.getGeneration() + " with " + cp.getCache().size() + " cached results");
+        return evolve(s, Population.of(cp.getPopulation()), cp.getGeneration(), generations, mutationRate, tournamentSize);
+    }
+
+    // Breed and score generations 'start' up to 'generations' from the scored population 'pop'.
+    // The parents and children swap places every generation, so nothing is allocated as it goes
+    private Pattern evolve(Solver s, Population pop, int start, int generations, float mutationRate, int tournamentSize) throws FileNotFoundException {
+        Population child = new Population(pop.size(), pop.numGenes());   // The child population that will replace 'pop'
+        Chromosome shown = new Chromosome(pop.numGenes(), 1);              // The best of a generation, for printing
 
         // Find out the best current solution (it's probably not very good
         // but with a GA, it's all relative to the current population
-        int best = getIndexBest(pop);
+        int best = pop.getIndexBest();
 
         // Now step through a number of generations of the populations
-        for (int g = 0; g < generations; g++) {
+        for (int g = start; g < generations; g++) {
             //float startTime = System.nanoTime();
             // Create a new generation using our current generation
-            for (int c = 0; c < pop.length; c++) {
-                // Select two individuals for breeding
-                Chromosome p1 = tournamentSelect(pop, tournamentSize);
-                Chromosome p2 = tournamentSelect(pop, tournamentSize);
-
-                // Crossover (combine) two parents to produce new offspring
-                child[c] = onePointCrossover(p1, p2);
-
-                // Mutation
-//				child[c].mutateBoolean(mutationRate);
-                child[c].mutateReal(mutationRate);
-
-                // Score new child
-                s.scoreNetLogoSolution(child[c]);
-            }
-
-
-            // Put the best from the last generation into new generation
-            // provided it is better than the child solution that would go there
-            // Location does not matter since selection is randomised
-            if (child[0].getFitness() > pop[best].getFitness())
-                pop[0] = pop[best];
-            else
-                pop[0] = child[0];
-
-            // Now copy the rest of the child generation to new parent generation
-            for (int p = 1; p < pop.length; p++) pop[p] = child[p];
+            long breedStart = s.getMetrics().start();
+            if (surrogate != null && surrogate.isReady()) breedScreened(s, pop, child, mutationRate, tournamentSize);
+            else breed(pop, child, mutationRate, tournamentSize);
+            s.getMetrics().record(Metrics.GA_OPERATORS, breedStart);
+
+            // Score the new children together so they can run side by side. Children that are
+            // clearly worse than the median parent would rarely win a tournament
+            s.setSelectionThreshold(pop.getMedianFitness());
+            s.setAbortCutoff(pop.getFitness(pop.getIndexWorst()));
+            s.setSeedGeneration(g + 1);
+            score(s, child);
+
+            // Children replace their parents, apart from an elite parent
+            replaceGeneration(pop, child);
+            Population parents = pop;
+            pop = child;
+            child = parents;
 
             // Find out what the new best result is
-            best = getIndexBest(pop);
+            best = pop.getIndexBest();
 
             // Print out the best fitness score and related data every generation
             if (g % 1 == 0) {
-                best = getIndexBest(pop);
-                String debug = String.format("%d\t%s\t%.5f\t%.5f\t%.5f\t%.5f\t%.5f\t%.5f\t%.5f", g,
-                        format(pop[best]), pop[best].getInfections(), pop[best].getTotalInfections(), pop[best].getDeaths(), pop[best].getTotalDeaths(), pop[best].getFitness(), pop[best].getICost(), pop[best].getMCost());
+                best = pop.getIndexBest();
+                pop.get(best, shown);
+                String debug = describe(g, shown);
                 System.out.println(debug);
+                System.out.println(s.getMetrics().summaryLine());
                 // System.out.println(pop[best]);
             }
             // we might want to time how long each run takes - uncomment next line, and the startTime line above
             //System.out.format("Time elapsed for run: %f%n", ((System.nanoTime() - startTime) / 1000000000));
+
+            checkpoint(s, pop, g + 1);
         }
 
 
         // Print it out if we want
-        System.out.println("Best\n" + pop[best] + " Score " + pop[best].getFitness());
-        best = getIndexBest(pop);
-        return pop[best].getPattern();
+        best = pop.getIndexBest();
+        Chromosome winner = pop.toChromosome(best);
+        System.out.println("Best\n" + winner + " Score " + winner.getFitness());
+        return winner.getPattern();
+    }
+
+    // Score every member of 'pop' through its stand in chromosomes
+    private void score(Solver s, Population pop) throws FileNotFoundException {
+        Chromosome[] scored = pop.toChromosomes();
+        s.scorePopulation(scored);
+        pop.readScores(scored);
+        learn(s, scored);
+    }
+
+    // The chromosomes in 'batch' that the sweep hasn't recorded yet
+    private Chromosome[] unrecorded(SweepSink sweep, Chromosome[] batch) {
+        ArrayList<Chromosome> left = new ArrayList<>(batch.length);
+        for (Chromosome c : batch)
+            if (!sweep.contains(PolicyParameters.fromChromosome(c))) left.add(c);
+        return left.toArray(new Chromosome[0]);
+    }
+
+    /**
+     * Fill 'child' with offspring of 'pop', each bred from two tournament
+     * winners by one point crossover and then mutated.
+     *
+     * @param pop            The scored parent population
+     * @param child          Where to put the children, the same size as 'pop'
+     * @param mutationRate   The mutation rate
+     * @param tournamentSize How many solutions to include in each tournament
+     */
+    public void breed(Chromosome[] pop, Chromosome[] child, float mutationRate, int tournamentSize) {
+        for (int c = 0; c < child.length; c++) {
+            // Select two individuals for breeding
+            Chromosome p1 = tournamentSelect(pop, tournamentSize);
+            Chromosome p2 = tournamentSelect(pop, tournamentSize);
+
+            // Crossover (combine) two parents to produce new offspring
+            child[c] = onePointCrossover(p1, p2);
+
+            // Mutation
+//			child[c].mutateBoolean(mutationRate);
+            child[c].mutateReal(mutationRate, random);
+        }
+    }
+
+    /**
+     * As breed(Chromosome[], ...), but breeding in place into the rows of 'child'.
+     *
+     * @param pop            The scored parent population
+     * @param child          Where to put the children, the same size as 'pop'
+     * @param mutationRate   The mutation rate
+     * @param tournamentSize How many solutions to include in each tournament
+     */
+    public void breed(Population pop, Population child, float mutationRate, int tournamentSize) {
+        for (int c = 0; c < child.size(); c++) breed(pop, child, c, mutationRate, tournamentSize);
+    }
+
+    // Breed member 'c' of 'child' from two tournament winners of 'pop'
+    private void breed(Population pop, Population child, int c, float mutationRate, int tournamentSize) {
+        int p1 = pop.tournamentSelect(tournamentSize, random);
+        int p2 = pop.tournamentSelect(tournamentSize, random);
+        child.onePointCrossover(pop, p1, p2, c, random);
+        child.mutateReal(c, mutationRate, random);
+    }
+
+    /**
+     * As breed, but each child is the best of 'candidates' children according to the
+     * surrogate's expected improvement on the best fitness in 'pop'.
+     */
+    public void breedScreened(Solver s, Chromosome[] pop, Chromosome[] child, float mutationRate, int tournamentSize) {
+        float best = getRefBest(pop).getFitness();
+        Chromosome[] trial = new Chromosome[1];
+        for (int c = 0; c < child.length; c++) {
+            double bestEI = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < candidates; t++) {
+                breed(pop, trial, mutationRate, tournamentSize);
+                double ei = surrogate.expectedImprovement(Surrogate.features(PolicyParameters.fromChromosome(trial[0])), best);
+                if (ei > bestEI) {
+                    bestEI = ei;
+                    child[c] = trial[0];
+                }
+            }
+        }
+        s.getMetrics().add(Metrics.SURROGATE_REJECTED, (long) child.length * (candidates - 1));
+    }
+
+    /**
+     * As breedScreened(Solver, Chromosome[], ...), but breeding in place into the rows of 'child'.
+     */
+    public void breedScreened(Solver s, Population pop, Population child, float mutationRate, int tournamentSize) {
+        float best = pop.getFitness(pop.getIndexBest());
+        Population trial = new Population(1, pop.numGenes());
+        Chromosome candidate = new Chromosome(pop.numGenes(), 1);
+        for (int c = 0; c < child.size(); c++) {
+            double bestEI = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < candidates; t++) {
+                breed(pop, trial, 0, mutationRate, tournamentSize);
+                trial.get(0, candidate);
+                double ei = surrogate.expectedImprovement(Surrogate.features(PolicyParameters.fromChromosome(candidate)), best);
+                if (ei > bestEI) {
+                    bestEI = ei;
+                    child.copy(trial, 0, c);
+                }
+            }
+        }
+        s.getMetrics().add(Metrics.SURROGATE_REJECTED, (long) child.size() * (candidates - 1));
+    }
+
+    // Teach the surrogate the scores we have just simulated and record how well it predicted them
+    private void learn(Solver s, Chromosome[] scored) {
+        if (surrogate == null) return;
+        for (Chromosome c : scored) surrogate.learn(c);
+        s.getMetrics().setGauge(Metrics.SURROGATE_MAE, surrogate.getMeanAbsoluteError());
+        s.getMetrics().setGauge(Metrics.SURROGATE_R2, surrogate.getRSquared());
+    }
+
+    /**
+     * Replace the parents in 'pop' with the scored children in 'child', keeping
+     * the best parent in place of the first child if it is better.
+     *
+     * @param pop   The parent population, which becomes the next generation
+     * @param child The scored children
+     */
+    public void replaceGeneration(Chromosome[] pop, Chromosome[] child) {
+        int best = getIndexBest(pop);
+
+        // Put the best from the last generation into new generation
+        // provided it is better than the child solution that would go there
+        // Location does not matter since selection is randomised
+        if (child[0].getFitness() > pop[best].getFitness())
+            pop[0] = pop[best];
+        else
+            pop[0] = child[0];
+
+        // Now copy the rest of the child generation to new parent generation
+        for (int p = 1; p < pop.length; p++) pop[p] = child[p];
+    }
+
+    /**
+     * Keep the best parent in 'pop' in place of the first scored child in 'child'
+     * if it is better, so that 'child' can become the next generation.
+     *
+     * @param pop   The parent population
+     * @param child The scored children, which become the next generation
+     */
+    public void replaceGeneration(Population pop, Population child) {
+        int best = pop.getIndexBest();
+        if (child.getFitness(0) > pop.getFitness(best)) child.copy(pop, best, 0);
+    }
+
+    /**
+     * A line describing chromosome 'c' in generation 'g', for printing as a run goes along.
+     */
+    public String describe(int g, Chromosome c) {
+        return String.format("%d\t%s\t%.5f\t%.5f\t%.5f\t%.5f\t%.5f\t%.5f\t%.5f", g,
+                format(c), c.getInfections(), c.getTotalInfections(), c.getDeaths(), c.getTotalDeaths(), c.getFitness(), c.getICost(), c.getMCost());
+    }
+
+    // Save the scored population if a checkpoint is due before running 'generation'
+    private void checkpoint(Solver s, Population pop, int generation) {
+        if (checkpointFile == null || generation % checkpointEvery != 0) return;
+        try {
+            new Checkpoint(generation, pop.toChromosomes(), random, s.getCache().snapshot(), s.getSeeds()).write(checkpointFile);
+        } catch (IOException e) {
+            // Losing a checkpoint shouldn't stop the run
+            e.printStackTrace();
+        }
     }
 
     /**
@@ -130,111 +360,56 @@ public class GA {
     }
 
     /**
-     * Performs a parameter sweep of the model to try and obtain every possible solution for analysis
+     * Performs a parameter sweep of the model to try and obtain every possible solution for analysis.
+     * The points come from a scrambled Sobol sequence so that they cover the parameters evenly.
      *
      * @param s    An instance of the solver class
      * @param parameters    The number of parameters being used
-     * @param popsize    The size of the population
+     * @param popsize    The number of points in the sweep
      * @return The pattern of the best solution
      * @throws FileNotFoundException
      */
     public Pattern parameterSweep(Solver s, int parameters, int popsize) throws FileNotFoundException {
+        return parameterSweep(s, new DesignGenerator(DesignGenerator.Kind.SOBOL, popsize, parameters, random));
+    }
 
-        // The size of the tournament means larger tournaments
-        // are more competitive (more chance of best current
-        // solution being selected for the tournament). We
-        // don't want to end up with the whole population or
-        // we will just be hill climbing in disguise.
-
-        Chromosome[] pop;        // The parent population
-        Chromosome[] child;    // The child population that will replace the above
-
-        // Initialise our population
-        pop = new Chromosome[popsize];
-        child = new Chromosome[popsize];
-
-        boolean alreadyExists = true;
-        // Create some random solutions
-        for (int p = 0; p < popsize; p++) {
-            alreadyExists = true;
-            pop[p] = new Chromosome(parameters, 1); // Create a 1 dimensional array to hold NetLogo parameters
-            while (alreadyExists) {
-                pop[p] = new Chromosome(parameters, 1); // Create a 1 dimensional array to hold NetLogo parameters
-                alreadyExists = false;
-                for (int i = 0; i < p; i++) {
-                    if ((format(pop[i]).toString()).equals((format(pop[p]).toString()))) {
-                        alreadyExists = true;
-                    }
-                    if (alreadyExists) {
-                        break;
-                    }
-                }
+    /**
+     * Score every point of 'design', a batch at a time so the batches can be scored in parallel.
+     *
+     * @param s      An instance of the solver class
+     * @param design The points to score
+     * @return The pattern of the best solution
+     * @throws FileNotFoundException
+     */
+    public Pattern parameterSweep(Solver s, DesignGenerator design) throws FileNotFoundException {
+        // Every point is scored in full
+        s.setSelectionThreshold(Float.NaN);
+        s.setAbortCutoff(Float.POSITIVE_INFINITY);
+
+        Chromosome best = null;
+        int points = 0;
+        SweepSink sweep = s.getSweepSink();
+        while (design.hasNext()) {
+            Chromosome[] batch = design.nextBatch(SWEEP_BATCH);
+            if (sweep != null) batch = unrecorded(sweep, batch);
+            s.scorePopulation(batch);
+            for (Chromosome c : batch) {
+//                System.out.println(format(c) + "\t" + c.getFitness()); // for parameter sweep
+                if (sweep == null) System.out.println(c + "" + c.getFitness()); // for regular use
+                if (best == null || c.getFitness() < best.getFitness()) best = c;
             }
+            points += batch.length;
         }
-
-        // Score our population
-        for (int p = 0; p < popsize; p++) {
-//            System.out.println(format(pop[p]) + "\t" + s.scoreNetLogoSolution(pop[p])); // for parameter sweep
-            System.out.println(pop[p] + "" + s.scoreNetLogoSolution(pop[p])); // for regular use
+        if (best == null) {
+            System.out.println("Every point has already been recorded");
+            return null;
         }
         System.out.println();
 
-        // Find out the best current solution (it's probably not very good
-        // but with a GA, it's all relative to the current population
-        int best = getIndexBest(pop);
-//
-//		// Now step through a number of generations of the populations
-//		for (int g=0; g<generations; g++)
-//		{
-//			// Create a new generation using our current generation
-//			for (int c=0; c<pop.length; c++)
-//			{
-//				// Select two individuals for breeding
-//				Chromosome p1 = tournamentSelect(pop,tournamentSize);
-//				Chromosome p2 = tournamentSelect(pop,tournamentSize);
-//
-//				// Crossover (combine) two parents to produce new offspring
-//				child[c] = onePointCrossover(p1,p2);
-//
-//				// Mutation
-////				child[c].mutateReal(mutationRate);
-//
-//				// Score new child
-//				s.scoreNetLogoSolution(child[c]);
-//			}
-//
-//
-//			// Put the best from the last generation into new generation
-//			// provided it is better than the child solution that would go there
-//			// Location does not matter since selection is randomised
-//			if (child[0].getFitness() > pop[best].getFitness())
-//				pop[0] = pop[best];
-//			else
-//				pop[0] = child[0];
-//
-//			// Now copy the rest of the child generation to new parent generation
-//			for (int p=1; p<pop.length; p++) pop[p] = child[p];
-//
-//
-//
-//			// Print out the best fitness score every 10 generations
-//			for (int i = 0; i < popsize; i++)
-//			{
-//				best = i;
-//				String debug = String.format("%d\t%.5f\t%s\t%.5f",g,pop[best].getFitness(),pop[best].toString(), pop[best].getInfections());
-//				System.out.println(debug);
-//				// System.out.println(pop[best]);
-//			}
-//			// Find out what the new best result is
-//			best = getIndexBest(pop);
-//
-//		}
-
-
         // Print it out if you want...
-        System.out.println("Best\n" + pop[best] + " Score " + pop[best].getFitness());
-        best = getIndexBest(pop);
-        return pop[best].getPattern();
+        System.out.println(points + " points, " + design.getDuplicates() + " duplicates skipped");
+        System.out.println("Best\n" + best + " Score " + best.getFitness());
+        return best.getPattern();
     }
 
     /**
@@ -249,14 +424,33 @@ public class GA {
 
         // Start comparing from the next one after it
         for (int p = 1; p < pop.length; p++) {
-            // Is the one at 'p' better than our current 'best'
-            if (pop[p].getFitness() < pop[best].getFitness()) {
+            // Is the one at 'p' better than our current 'best'? An aborted evaluation
+            // only has a lower bound for its fitness, so one that finished always wins
+            if (pop[best].isAborted() != pop[p].isAborted()) {
+                if (pop[best].isAborted()) best = p;
+            } else if (pop[p].getFitness() < pop[best].getFitness()) {
                 best = p;    // Take a note of the index of the new best result
             }
         }
         return best;
     }
 
+    /**
+     * Find the median fitness of the population.
+     *
+     * @param pop    The population to search
+     * @return The median fitness in 'pop'
+     */
+    public float getMedianFitness(Chromosome[] pop) {
+        float[] fitness = new float[pop.length];
+        for (int p = 0; p < pop.length; p++) fitness[p] = pop[p].getFitness();
+        Arrays.sort(fitness);
+
+        int mid = fitness.length / 2;
+        if (fitness.length % 2 == 1) return fitness[mid];
+        return (fitness[mid - 1] + fitness[mid]) / 2;
+    }
+
     /**
      * Go through the population and find the individual with the
      * best overall score (where best is low in this case).
@@ -324,7 +518,7 @@ public class GA {
         int items = 0;
         int individual;
         while (items < size) {
-            individual = (int) (Math.random() * pop.length);
+            individual = (int) (random.nextDouble() * pop.length);
             sample[items] = pop[individual]; // Copy the reference
             items++;
         }
@@ -364,18 +558,20 @@ public class GA {
      *
      * @param pop    The population to select from
      * @param size    The size of tournament to use
-     * @return The worst individual in the tournament
+     * @return The index in 'pop' of the worst individual in the tournament
      */
     public int inverseTournamentSelect(Chromosome[] pop, int size) {
-        // Randomly pick individuals from the population until we have enough
-        // for our tournament.
-        Chromosome[] tournament = selectFrom(pop, size);
-
-        // Now go through tournament and return the worst. Note that the bigger the
+        // Randomly pick individuals from the population and keep track of the
+        // worst. We need its position in 'pop' rather than in the tournament
+        // so that the caller can replace it. Note that the bigger the
         // tournament, the more chance there will be that the worst individual
         // is in there
-
-        return getIndexWorst(tournament);
+        int worst = (int) (random.nextDouble() * pop.length);
+        for (int items = 1; items < size; items++) {
+            int individual = (int) (random.nextDouble() * pop.length);
+            if (pop[individual].getFitness() > pop[worst].getFitness()) worst = individual;
+        }
+        return worst;
     }
 
 
@@ -395,7 +591,7 @@ public class GA {
      */
     public Chromosome onePointCrossover(Chromosome p1, Chromosome p2) {
         int numGenes = p1.numGenes();
-        int crossoverPoint = (int) (Math.random() * numGenes);
+        int crossoverPoint = (int) (random.nextDouble() * numGenes);
         Chromosome child = new Chromosome(p1); // Use p1 as a template
 
         int g = 0;
@@ -420,7 +616,7 @@ public class GA {
         Chromosome child = new Chromosome(p1); // Use p1 as a template
 
         for (int g = 0; g < child.numGenes(); g++) {
-            if (Math.random() < 0.5f)
+            if (random.nextDouble() < 0.5f)
                 child.setGene(g, p1.getGene(g));
             else
                 child.setGene(g, p2.getGene(g));
@@ -455,7 +651,7 @@ public class GA {
         int locations = p1Routes.size();
         for (int r = 0; r < locations; r++) {
             // Pick a random index
-            n1 = (int) (Math.random() * p1Routes.size());
+            n1 = (int) (random.nextDouble() * p1Routes.size());
 
             // Get the location that corresponds to it
             location = p1Routes.get(n1);
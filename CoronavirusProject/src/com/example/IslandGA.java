@@ -0,0 +1,183 @@
+package com.example;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * IslandGA runs several GA populations (islands) side by side. Each island has
+ * its own workspace, its own GA with its own random number generator, and its
+ * own thread, so it breeds and scores at its own pace. Every few generations an
+ * island sends copies of its best chromosomes to the next island round the ring
+ * and takes in whatever has arrived from the one before it in place of its worst.
+ * Migrants travel through lock-free queues, so no island ever waits for another.
+ * With a single workspace there is one island and nothing migrates.
+ *
+ * Islands score through the shared Solver, so they share its fitness cache and
+ * metrics, but they run without racing or early abort since the threshold and
+ * cutoff belong to a single population.
+ */
+public class IslandGA {
+
+    private final Solver s;
+    private final List<ModelSimulation> workspaces;    // One per island
+    private final int migrationInterval;               // Generations between migrations
+    private final int migrants;                        // How many chromosomes each migration sends
+    private final Random random;                       // Seeds each island's GA
+
+    /**
+     * @param s                 The solver to score chromosomes with
+     * @param workspaces        A workspace for each island, nobody else may use them while we run
+     * @param migrationInterval How many generations between migrations
+     * @param migrants          How many of its best chromosomes an island sends each time
+     * @param random            Where each island's random number generator is seeded from
+     */
+    public IslandGA(Solver s, List<ModelSimulation> workspaces, int migrationInterval, int migrants, Random random) {
+        this.s = s;
+        this.workspaces = workspaces;
+        this.migrationInterval = migrationInterval;
+        this.migrants = migrants;
+        this.random = random;
+    }
+
+    /**
+     * Evolve an island per workspace and return the best solution found on any of them.
+     *
+     * @param parameters     The number of genes in each chromosome
+     * @param popsize        The size of each island's population
+     * @param generations    How many generations each island runs for
+     * @param mutationRate   The mutation rate
+     * @param tournamentSize How many solutions to include in each tournament
+     * @return The best solution found
+     */
+    public Pattern evolveNetLogo(int parameters, int popsize, int generations, float mutationRate, int tournamentSize) throws FileNotFoundException {
+        int islands = workspaces.size();
+
+        // inbox[i] holds the migrants on their way to island i
+        List<Queue<Chromosome>> inbox = new ArrayList<>(islands);
+        for (int i = 0; i < islands; i++) inbox.add(new ConcurrentLinkedQueue<>());
+
+        List<Island> all = new ArrayList<>(islands);
+        for (int i = 0; i < islands; i++) {
+            GA ga = new GA();
+            ga.setRandom(new Random(random.nextLong()));
+            all.add(new Island(i, ga, workspaces.get(i), inbox.get(i), inbox.get((i + 1) % islands),
+                    parameters, popsize, generations, mutationRate, tournamentSize));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(islands, r -> {
+            Thread t = new Thread(r, "island");
+            t.setDaemon(true); // Don't keep the JVM alive once the GA has finished
+            return t;
+        });
+        try {
+            List<Future<Chromosome>> results = new ArrayList<>(islands);
+            for (Island island : all) results.add(executor.submit(island::evolve));
+
+            // Wait for every island and keep the best of their best
+            Chromosome best = null;
+            for (Future<Chromosome> result : results) {
+                Chromosome c = join(result);
+                if (best == null || c.getFitness() < best.getFitness()) best = c;
+            }
+
+            System.out.println("Best\n" + best + " Score " + best.getFitness());
+            return best.getPattern();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Chromosome join(Future<Chromosome> result) throws FileNotFoundException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evolving islands", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FileNotFoundException) throw (FileNotFoundException) e.getCause();
+            throw new IllegalStateException("Island failed", e.getCause());
+        }
+    }
+
+    /**
+     * One island: a population evolved on its own thread with its own workspace.
+     */
+    private class Island {
+
+        private final int id;
+        private final GA ga;
+        private final ModelSimulation ms;
+        private final Queue<Chromosome> in;     // Migrants arriving here
+        private final Queue<Chromosome> out;    // Migrants leaving for the next island
+        private final Chromosome[] pop;
+        private final int generations;
+        private final float mutationRate;
+        private final int tournamentSize;
+
+        Island(int id, GA ga, ModelSimulation ms, Queue<Chromosome> in, Queue<Chromosome> out,
+               int parameters, int popsize, int generations, float mutationRate, int tournamentSize) {
+            this.id = id;
+            this.ga = ga;
+            this.ms = ms;
+            this.in = in;
+            this.out = out;
+            this.generations = generations;
+            this.mutationRate = mutationRate;
+            this.tournamentSize = tournamentSize;
+
+            pop = new Chromosome[popsize];
+            for (int p = 0; p < popsize; p++)
+                pop[p] = new Chromosome(parameters, 1, ga.getRandom());
+        }
+
+        Chromosome evolve() throws FileNotFoundException {
+            score(pop);
+
+            Chromosome[] child = new Chromosome[pop.length];
+            for (int g = 0; g < generations; g++) {
+                long start = s.getMetrics().start();
+                ga.breed(pop, child, mutationRate, tournamentSize);
+                s.getMetrics().record(Metrics.GA_OPERATORS, start);
+
+                score(child);
+                ga.replaceGeneration(pop, child);
+
+                // A lone island's ring leads back to itself, and copying its own best over its worst only loses diversity
+                if (workspaces.size() > 1 && (g + 1) % migrationInterval == 0) emigrate();
+                immigrate();
+
+                System.out.println("island " + id + "\t" + ga.describe(g, ga.getRefBest(pop)));
+            }
+            return ga.getRefBest(pop);
+        }
+
+        private void score(Chromosome[] chromosomes) throws FileNotFoundException {
+            for (Chromosome c : chromosomes) s.scoreNetLogoSolution(c, ms);
+        }
+
+        // Send copies of our best chromosomes to the next island, they keep their scores
+        private void emigrate() {
+            Chromosome[] sorted = pop.clone();
+            Arrays.sort(sorted, (a, b) -> Float.compare(a.getFitness(), b.getFitness()));
+            for (int m = 0; m < Math.min(migrants, sorted.length); m++) out.add(sorted[m].clone());
+        }
+
+        // Take in whatever has arrived, each migrant replacing our worst chromosome if it is better
+        private void immigrate() {
+            Chromosome c;
+            while ((c = in.poll()) != null) {
+                int worst = ga.getIndexWorst(pop);
+                if (c.getFitness() < pop[worst].getFitness()) pop[worst] = c;
+            }
+        }
+    }
+}
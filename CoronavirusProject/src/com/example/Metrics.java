@@ -0,0 +1,192 @@
+package com.example;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics collects timings and counts from the Solver, the GA and every
+ * ModelSimulation so we can see where an optimisation spends its time. Each
+ * timed phase has a histogram of how long it took, and each counter is a
+ * running total. Everything here is safe to use from several threads.
+ */
+public class Metrics {
+
+    // Timed phases
+    public static final String PARAMETER_SETUP = "parameter-setup";
+    public static final String NETLOGO_SETUP = "netlogo-setup";
+    public static final String TICKS = "ticks";
+    public static final String LOG_PARSING = "log-parsing";
+    public static final String COST = "cost";
+    public static final String GA_OPERATORS = "ga-operators";
+
+    // Counters
+    public static final String EVALUATIONS = "evaluations";
+    public static final String CACHE_HITS = "cache-hits";
+    public static final String ABORTED = "aborted";
+    public static final String REPLICATES = "replicates";
+    public static final String TICKS_SIMULATED = "ticks-simulated";
+    public static final String SURROGATE_REJECTED = "surrogate-rejected";
+
+    // Gauges
+    public static final String SURROGATE_MAE = "surrogate-mae";
+    public static final String SURROGATE_R2 = "surrogate-r2";
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final Map<String, Double> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * @return The time now, to pass to record once the phase is over
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record that phase 'name' ran from 'start' until now.
+     */
+    public void record(String name, long start) {
+        histogram(name).add(System.nanoTime() - start);
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long amount) {
+        counters.computeIfAbsent(name, n -> new AtomicLong()).addAndGet(amount);
+    }
+
+    public long getCount(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Set gauge 'name' to its latest 'value', replacing the last one.
+     */
+    public void setGauge(String name, double value) {
+        gauges.put(name, value);
+    }
+
+    public double getGauge(String name) {
+        return gauges.getOrDefault(name, Double.NaN);
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * A one line summary of every counter and phase, e.g. for printing each generation.
+     */
+    public String summaryLine() {
+        StringBuilder sb = new StringBuilder("metrics");
+        for (Map.Entry<String, AtomicLong> c : new TreeMap<>(counters).entrySet())
+            sb.append(String.format(" %s=%d", c.getKey(), c.getValue().get()));
+        for (Map.Entry<String, Double> g : new TreeMap<>(gauges).entrySet())
+            sb.append(String.format(" %s=%.4f", g.getKey(), g.getValue()));
+        sb.append(" |");
+        for (Map.Entry<String, Histogram> h : new TreeMap<>(histograms).entrySet())
+            sb.append(' ').append(h.getKey()).append(' ').append(h.getValue());
+        return sb.toString();
+    }
+
+    /**
+     * A snapshot of every counter and phase as a JSON object. Times are in milliseconds.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\"counters\":{");
+        String sep = "";
+        for (Map.Entry<String, AtomicLong> c : new TreeMap<>(counters).entrySet()) {
+            sb.append(sep).append('"').append(c.getKey()).append("\":").append(c.getValue().get());
+            sep = ",";
+        }
+        sb.append("},\"gauges\":{");
+        sep = "";
+        for (Map.Entry<String, Double> g : new TreeMap<>(gauges).entrySet()) {
+            sb.append(sep).append('"').append(g.getKey()).append("\":").append(String.format(Locale.ROOT, "%.6f", g.getValue()));
+            sep = ",";
+        }
+        sb.append("},\"phases\":{");
+        sep = "";
+        for (Map.Entry<String, Histogram> h : new TreeMap<>(histograms).entrySet()) {
+            sb.append(sep).append('"').append(h.getKey()).append("\":").append(h.getValue().toJson());
+            sep = ",";
+        }
+        return sb.append("}}").toString();
+    }
+
+    /**
+     * Write the JSON snapshot to 'filepath'.
+     */
+    public void writeJson(String filepath) {
+        try (FileWriter out = new FileWriter(filepath)) {
+            out.write(toJson());
+            out.write('\n');
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A histogram of durations in nanoseconds. Buckets double in width, so bucket
+     * 'b' holds durations of at least 2^(b-1) and less than 2^b nanoseconds.
+     */
+    public static class Histogram {
+
+        private final long[] buckets = new long[64];
+        private long count = 0;
+        private long total = 0;
+        private long min = Long.MAX_VALUE;
+        private long max = 0;
+
+        public synchronized void add(long nanos) {
+            buckets[64 - Long.numberOfLeadingZeros(Math.max(nanos, 0))]++;
+            count++;
+            total += nanos;
+            min = Math.min(min, nanos);
+            max = Math.max(max, nanos);
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getTotal() {
+            return total;
+        }
+
+        /**
+         * An estimate of the given percentile, to within a factor of two.
+         *
+         * @param p The percentile, between 0 and 1
+         */
+        public synchronized long percentile(double p) {
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= rank && seen > 0) return Math.min(max, b == 0 ? 0 : 1L << b);
+            }
+            return max;
+        }
+
+        public synchronized String toString() {
+            if (count == 0) return "n=0";
+            return String.format("n=%d mean=%.3fms p99=%.3fms total=%.1fs", count, total / 1e6 / count,
+                    percentile(0.99) / 1e6, total / 1e9);
+        }
+
+        synchronized String toJson() {
+            return String.format(Locale.ROOT, "{\"count\":%d,\"totalMs\":%.3f,\"meanMs\":%.3f,\"minMs\":%.3f,\"maxMs\":%.3f,\"p50Ms\":%.3f,\"p99Ms\":%.3f}",
+                    count, total / 1e6, count == 0 ? 0 : total / 1e6 / count, count == 0 ? 0 : min / 1e6, max / 1e6,
+                    percentile(0.5) / 1e6, percentile(0.99) / 1e6);
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.example;
 
+import org.nlogo.api.AgentException;
 import org.nlogo.api.LogoException;
 import org.nlogo.core.CompilerException;
+import org.nlogo.core.LogoList;
 import org.nlogo.headless.HeadlessWorkspace;
+import org.nlogo.nvm.Procedure;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
-import java.util.stream.DoubleStream;
 
 /**
  * @author 2611955
@@ -14,20 +21,28 @@ import java.util.stream.DoubleStream;
  */
 public class ModelSimulation implements Serializable {
 
-    final int noDays = 365;
+    static final int DAYS = 365;
+    final int noDays = DAYS;
     // Global Variables
     final HeadlessWorkspace workspace = HeadlessWorkspace.newInstance();
     final boolean debug = false;
-    final double averageDailyWage = 80.46;
-    final double sdCostPerDay = 10;
-    final double lockdownCostPerDay = averageDailyWage * 3;
-    final double ppeCostPerDay = 30;
-    final double shieldingCostPerDay = averageDailyWage;
-    final double isolationCostPerDay = averageDailyWage;
-    final double testAndTraceCost = averageDailyWage * 5;
-    final int deathCost = 4000;
-    final double methodWeighting = 1.0;
-    final double infectionWeighting = 12.0;
+    // The compliances setInitialConditions gives every evaluation
+    static final double PROTECTION_COMPLIANCE = 90;
+    static final double LOCKDOWN_COMPLIANCE = 80;
+    static final double SHIELDING_COMPLIANCE = 70;
+    static final double ISOLATION_COMPLIANCE = 70;
+    static final double SOCIAL_DISTANCING_COMPLIANCE = 90;
+    static final double methodWeighting = 1.0;
+    static final double infectionWeighting = 12.0;
+    CostModel costs = defaultCostModel(); // scores each evaluation
+    final List<CostModel> otherCosts = new ArrayList<>(); // further models costing the same days, for comparison
+    double[] costResults = new double[1]; // the average daily cost under each model from the last evaluation
+    final double[][] meanSeries = new double[SERIES][]; // the running means of each series, for the cost models
+    TrajectoryStore trajectories = null; // where the replicates of every finished evaluation are kept, or null to throw them away
+    PolicyParameters trajectoryKey = null; // the configuration the replicates being run belong to
+    final List<double[][]> pendingTrajectories = new ArrayList<>(); // the replicates of this evaluation, kept until it finishes
+    int[] pendingSeeds = new int[0]; // the seed each of them ran with
+    int pendingCount; // how many of them there are
     double[] runResults;
     double averageInfections;
     FileWriter writer;
@@ -35,17 +50,29 @@ public class ModelSimulation implements Serializable {
     float ttIsoSliderValue;
     float ttTraceSliderValue;
     float ttTestCoverageSliderValue;
+    // The daily series logged by the model, in the order tick-counters reports them
+    static final int INFECTED = 0;
+    static final int POPULATION = 1;
+    static final int OFF_WORK = 2;
+    static final int UNPRODUCTIVE = 3;
+    static final int ADMISSIONS = 4;
+    static final int DEATHS = 5;
+    static final int SERIES = 6;
+    // The replicate currently being run, and the running statistics of the ones that finished
+    final double[][] replicate = new double[SERIES][noDays];
+    final DailyStatistics statistics = new DailyStatistics(SERIES, noDays);
+    // Each series summed over the days of the replicates of this evaluation seen so far, for the early abort bound
+    final double[] finishedTotals = new double[SERIES];
+    final double[] replicateTotals = new double[SERIES];
+    final double[] seenTotals = new double[SERIES];
+    double maxPopulation = Double.POSITIVE_INFINITY; // the most people the model can hold on any day
     double[] averageDailyInfections;
-    double[] dailyCost;
-    double[][] dailyPopulations;
+    final double[] dailyCost = new double[noDays];
+    final double[] otherDailyCost = new double[noDays];
     double[] averageDailyPopulations;
-    double[][] offFromWork;
     double[] averageOffFromWork;
-    double[][] unproductiveWorkers;
     double[] averageUnproductive;
-    double[][] hospitalAdmissions;
     double[] averageAdmissions;
-    double[][] dailyDeaths;
     double[] averageDailyDeaths;
     double isPPEOn;
     double isIsolationOn;
@@ -68,17 +95,105 @@ public class ModelSimulation implements Serializable {
     Scanner myReader;
     String data;
     String[] arrOfStr;
-    int hospitalCost = 400;
+    int loopsRun; // how many replicates of the current evaluation we have run
+    int abortChunk = 30; // days to advance between checks against the cutoff
+    boolean aborted; // whether the current evaluation gave up early
+    double abortBound; // the lower bound on the score that made it give up
+    String logFile; // file the model writes its per-tick log to
+    String dataFile; // file the run summary is written to
+    boolean captureInMemory = true; // read the per-tick counters straight from the model rather than from logFile
+    Seeds seeds = null;             // where each replicate's random seed comes from, or null to leave NetLogo unseeded
+    int seedGeneration = 0;         // the generation whose seeds we are using
+    Metrics metrics = new Metrics(); // where timings and counts are recorded, usually shared with the Solver
+    // Commands and reporters we have already compiled, keyed by their source text
+    final Map<String, Procedure> compiledCommands = new HashMap<>();
+    final Map<String, Procedure> compiledReporters = new HashMap<>();
 
     public ModelSimulation(String folder, String model) {
+        this(folder, model, folder + "testLog.txt", folder + "model_data.txt");
+    }
+
+    /**
+     * Opens a model whose log files are private to this workspace, so that several
+     * workspaces can run side by side without writing over each other's results.
+     *
+     * @param folder    The folder containing the model
+     * @param model     The name of the model file
+     * @param id        An identifier for this workspace, used to name its log files
+     */
+    public ModelSimulation(String folder, String model, int id) {
+        this(folder, model, folder + "testLog-" + id + ".txt", folder + "model_data-" + id + ".txt");
+    }
+
+    private ModelSimulation(String folder, String model, String logFile, String dataFile) {
+        this.logFile = logFile;
+        this.dataFile = dataFile;
         try {
             workspace.open(folder + model, true);
+            workspace.command("set log-file " + quote(logFile));
+            workspace.command("set capture-in-memory? " + captureInMemory);
             //setInitialConditions();
         } catch (Exception e) {
             System.err.println("Something went wrong." + e);
         }
     }
 
+    /**
+     * Seed replicate i of the following evaluations with seeds.replicateSeed(generation, i).
+     *
+     * @param seeds      The seeds to use, or null to stop seeding
+     * @param generation The generation being scored
+     */
+    public void setSeeds(Seeds seeds, int generation) {
+        this.seeds = seeds;
+        this.seedGeneration = generation;
+    }
+
+    public Seeds getSeeds() {
+        return seeds;
+    }
+
+    public int getSeedGeneration() {
+        return seedGeneration;
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public String getLogFile() {
+        return logFile;
+    }
+
+    public String getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * Choose how simulate gets the per-tick counters back from the model. In memory, the
+     * model keeps them in its tick-log global and we report them once at the end of a run.
+     * Otherwise the model writes them to the log file, which we read back in afterwards.
+     * The model is told too, so in memory it never opens the log file at all.
+     */
+    public void setCaptureInMemory(boolean captureInMemory) {
+        this.captureInMemory = captureInMemory;
+        command("set capture-in-memory? " + captureInMemory);
+    }
+
+    // Turns a Java string into a NetLogo string literal
+    static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    // Close the workspace once we are finished with it
+    public void dispose() {
+        try {
+            workspace.dispose();
+        } catch (Exception e) {
+            System.err.println("Something went wrong." + e);
+        }
+    }
+
     public static void main(String[] args) throws IOException {
         String filepath = Solver.projectPath; // filepath to write results to
         Scanner myScanner = new Scanner(System.in);
@@ -90,12 +205,18 @@ public class ModelSimulation implements Serializable {
         System.out.println("Do you want to match against real data?");
         String matching = myScanner.next();
 
-        ModelSimulation ms = new ModelSimulation("[File Location]", "covid-model.nlogo");
         // If we want to match
         if (matching.equals("Y")) {
             System.out.println("How many days do you want to match against?");
             int noDays = myScanner.nextInt();
-            ms.dataMatching(noRuns, noDays, filepath);
+            // Spread the runs over a workspace for each processor
+            WorkspacePool pool = new WorkspacePool("[File Location]", "covid-model.nlogo", Runtime.getRuntime().availableProcessors());
+            new DataMatching(pool, new Seeds(System.currentTimeMillis())).match(noRuns, noDays, filepath);
+            pool.close();
+
+            // End program and inform user
+            System.out.println("Finished.");
+            System.exit(0);
         }
 //        else // We perform the standard simulation instead
 //        {
@@ -105,182 +226,165 @@ public class ModelSimulation implements Serializable {
 //        }
     }
 
+    /**
+     * Match the model against the NHS data using this workspace alone. See DataMatching.
+     */
     public void dataMatching(int noRuns, int noDays, String filepath) throws IOException {
+        new DataMatching(new WorkspacePool(this), null).match(noRuns, noDays, filepath);
+    }
 
-        // Create and open new workspace
-        workspace.open("[File Location]" + "covid-model.nlogo", true);
-
-        // Array to hold the data about infections from the NHS file
-        double[] dataInfections;
-        dataInfections = new double[noDays];
-
-        String targetDataLocation = "[File Location]" + "nhs-covid-data.csv"; // File containing NHS data downloaded from Tableau Public (link in readme file)
-        String thisLine;
-
-        // Variables to track highest and lowest value so we can perform normalization
-        double dataMinValue = 999999;
-        double dataMaxValue = 0;
-        int fileCount = 0;
-
-        // Read in from file
-        FileInputStream fis = new FileInputStream(targetDataLocation);
-        BufferedReader d = new BufferedReader(new InputStreamReader(fis));
-        int k = 0;
-        String header = d.readLine(); // Skip first line (the headers)
-        while (k < noDays) {
-            thisLine = d.readLine();
-            String[] strar = thisLine.split(",");
-            dataInfections[k] = Double.parseDouble(strar[1]);
-            if (dataInfections[k] > dataMaxValue) {
-                dataMaxValue = dataInfections[k];
-            }
-            if (dataInfections[k] < dataMinValue) {
-                dataMinValue = dataInfections[k];
-            }
-            //System.out.println("Day " + k + ": " + dataInfections[k]);
-            k++;
-        }
-        // Normalization against the min and max values
-        for (k = 0; k < noDays; k++) {
-            dataInfections[k] = (dataInfections[k] - dataMinValue) / (dataMaxValue - dataMinValue);
-        }
+    /**
+     * Run the model for 'noDays' days and record the new infections on each day.
+     */
+    public double[] runMatching(int noDays, int run) {
+        return runMatching(noDays, run, "infection-log");
+    }
 
-        // 2-dimensional array to store the results of the runs
-        double[][] results = new double[noRuns][noDays];
-        for (int i = 0; i < noRuns; i++) {
-            System.out.println("Run " + (i + 1));
-            workspace.command("set number-people 250");
-            workspace.command("setup");
-            //System.out.println("Total cost: " + workspace.report("total-cost"));
-            for (int j = 0; j < noDays; j++) {
-                workspace.command("advance");
-                results[i][j] = (double) workspace.report("new-infected");
-                //System.out.println("New Infected: " + workspace.report("new-infected"));
-            }
-        }
+    /**
+     * Run the model for 'noDays' days and record one of its daily counts.
+     * The whole run happens in a single NetLogo command and the counts come back
+     * in one list, rather than a command and a report for every day.
+     *
+     * @param noDays    How many days to run for
+     * @param run       Which run this is, which picks its seed if we have any
+     * @param log       The list advance-matching keeps, "infection-log" or "death-log"
+     * @return The count on each day
+     */
+    public double[] runMatching(int noDays, int run, String log) {
+        setupModel(run);
+        runTicks("advance-matching " + noDays, noDays);
+
+        long start = metrics.start();
+        LogoList counts = (LogoList) report(log);
+        double[] daily = new double[noDays];
+        for (int d = 0; d < noDays; d++) daily[d] = (Double) counts.get(d);
+        metrics.record(Metrics.LOG_PARSING, start);
+        return daily;
+    }
 
-        PrintWriter out = new PrintWriter(new FileWriter(filepath));
+    // Can be used to remotely set parameters if needed
+    public void setParameter(String pName, String value) {
+        if (value.equals("true") || value.equals("false")) {
+            setParameter(pName, Boolean.parseBoolean(value));
+            return;
+        }
+        try {
+            setParameter(pName, Double.parseDouble(value));
+        } catch (NumberFormatException e) {
+            // Not a plain number or boolean, so let NetLogo work out what it is
+            command(String.format("set %s %s", pName, value));
+        }
+    }
 
-        // Arrays to store information
-        double[] averagedResults;
-        averagedResults = new double[noDays];
-        double[] euclideanDistances;
-        euclideanDistances = new double[noDays];
+    // Sets a slider or numeric global
+    public void setParameter(String pName, double value) {
+        setGlobal(pName, value);
+    }
 
-        double minValue = 999999;
-        double maxValue = 0;
+    // Sets a switch or boolean global
+    public void setParameter(String pName, boolean value) {
+        setGlobal(pName, value);
+    }
 
-        // Calculate the average of all the runs, along with the min and max values
-        for (int j = 0; j < noDays; j++) {
-            for (int i = 0; i < noRuns; i++) {
-                averagedResults[j] = averagedResults[j] + results[i][j];
-            }
-            averagedResults[j] = averagedResults[j] / noRuns;
-            if (averagedResults[j] > maxValue) {
-                maxValue = averagedResults[j];
-            }
-            if (averagedResults[j] < minValue) {
-                minValue = averagedResults[j];
-            }
+    /**
+     * Write straight into a global variable rather than compiling a new 'set'
+     * command for every value. NetLogo keeps all numbers as doubles.
+     *
+     * @param name     The name of the global
+     * @param value    A Double, Boolean or String to store in it
+     */
+    void setGlobal(String name, Object value) {
+        try {
+            workspace.world().setObserverVariableByName(name.toUpperCase(), value);
+        } catch (AgentException e) {
+            System.err.println("Could not set " + name + " directly, compiling instead. " + e);
+            command(String.format("set %s %s", name, value instanceof String ? quote((String) value) : value));
         }
-        System.out.println("Min Value: " + minValue + " Max Value: " + maxValue);
-
-        // Normalization
-        for (int i = 0; i < noDays; i++) {
-            averagedResults[i] = (averagedResults[i] - minValue) / (maxValue - minValue);
-            euclideanDistances[i] = Math.pow((dataInfections[i] - averagedResults[i]), 2);
+    }
 
-            //System.out.println(euclideanDistances[i]);
+    /**
+     * Run a NetLogo command. It is compiled the first time we see it and the
+     * compiled version is reused from then on.
+     *
+     * @param source    The NetLogo code to run
+     */
+    public void command(String source) {
+        Procedure procedure = compiledCommands.get(source);
+        if (procedure == null) {
+            procedure = workspace.compileCommands(source);
+            compiledCommands.put(source, procedure);
         }
+        workspace.runCompiledCommands(workspace.defaultOwner(), procedure);
+        rethrowLogoException();
+    }
 
-        // Calculate and print the euclidean distance
-        double euclideanDist = Math.sqrt(DoubleStream.of(euclideanDistances).sum());
-        System.out.println("The Euclidean Distance is: " + euclideanDist);
-
-        // Print results to excel file
-        for (int i = 0; i < noDays; i++) {
-            out.print(averagedResults[i] + "\t" + dataInfections[i] + "\t");
-            for (int j = 0; j < noRuns; j++) {
-                out.print("\t" + results[j][i]);
-            }
-            out.println();
+    /**
+     * Run a NetLogo reporter and return its result, compiling it the first
+     * time we see it.
+     *
+     * @param source    The NetLogo reporter to run
+     * @return The reported value (a Double, Boolean, String or LogoList)
+     */
+    public Object report(String source) {
+        Procedure procedure = compiledReporters.get(source);
+        if (procedure == null) {
+            procedure = workspace.compileReporter(source);
+            compiledReporters.put(source, procedure);
         }
-        out.println("\n" + euclideanDist);
-        out.close();
+        Object result = workspace.runCompiledReporter(workspace.defaultOwner(), procedure);
+        rethrowLogoException();
+        return result;
+    }
 
-        // End program and inform user
-        System.out.println("Finished.");
-        System.exit(0);
+    // Running compiled code doesn't throw runtime errors itself, the workspace keeps hold of them instead
+    private void rethrowLogoException() {
+        LogoException e = workspace.lastLogoException();
+        if (e != null) {
+            workspace.clearLastLogoException();
+            throw e;
+        }
     }
 
-    // Can be used to remotely set parameters if needed
-    public void setParameter(String pName, String value) {
-        String com = String.format("set %s %s", pName, value);
-        workspace.command(com);
+    // Forget everything we have compiled, needed whenever the model is reopened
+    void clearCompiled() {
+        compiledCommands.clear();
+        compiledReporters.clear();
     }
 
     // Setup the initial conditions of the workspace to avoid any issues if the model is changed
     public void setInitialConditions() {
-        workspace.command("set simulation-time 365");
-        workspace.command("set number-people 400");
-        workspace.command("set protection-threshold 5");
-        workspace.command("set protection-compliance 90");
-
-        workspace.command("set lockdown-threshold 13");
-        workspace.command("set lockdown-compliance 80");
-
-        workspace.command("set shielding-threshold 8");
-        workspace.command("set shielding-compliance 70");
-
-        workspace.command("set isolation-threshold 8");
-        workspace.command("set isolation-compliance 70");
-
-        workspace.command("set test-and-trace-threshold 10");
-        workspace.command("set test-coverage 80");
-        workspace.command("set trace-contacts-reached 80");
-        workspace.command("set tt-isolation-compliance 65");
-
-        workspace.command("set social-distancing-threshold 5");
-        workspace.command("set social-distancing-compliance 90");
-        workspace.command("set ppe? true");
-        workspace.command("set lockdown? true");
-        workspace.command("set shielding? true");
-        workspace.command("set self-isolation? true");
-        workspace.command("set test-and-trace? true");
-        workspace.command("set social-distancing? true");
+        setParameter("simulation-time", 365);
+        setParameter("number-people", 400);
+        setParameter("protection-threshold", 5);
+        setParameter("protection-compliance", PROTECTION_COMPLIANCE);
+
+        setParameter("lockdown-threshold", 13);
+        setParameter("lockdown-compliance", LOCKDOWN_COMPLIANCE);
+
+        setParameter("shielding-threshold", 8);
+        setParameter("shielding-compliance", SHIELDING_COMPLIANCE);
+
+        setParameter("isolation-threshold", 8);
+        setParameter("isolation-compliance", ISOLATION_COMPLIANCE);
+
+        setParameter("test-and-trace-threshold", 10);
+        setParameter("test-coverage", 80);
+        setParameter("trace-contacts-reached", 80);
+        setParameter("tt-isolation-compliance", 65);
+
+        setParameter("social-distancing-threshold", 5);
+        setParameter("social-distancing-compliance", SOCIAL_DISTANCING_COMPLIANCE);
+        setParameter("ppe?", true);
+        setParameter("lockdown?", true);
+        setParameter("shielding?", true);
+        setParameter("self-isolation?", true);
+        setParameter("test-and-trace?", true);
+        setParameter("social-distancing?", true);
     }
 
     // Main method for running the model and returning the results to the evolutionary algorithm
     public double simulate(int noRuns, int noLoops, String filepath, Chromosome chrome) throws FileNotFoundException {
 
-        // Local variables
-        double eqnI;
-        double eqnM;
-        double maxI;
-        double normI;
-        double maxM;
-        double normM;
-        workspace.command("delete-file");
-        isolationThreshold = (double) workspace.report("isolation-threshold");
-        isolationCompliance = (double) workspace.report("isolation-compliance");
-        ppeThreshold = (double) workspace.report("protection-threshold");
-        ppeCompliance = (double) workspace.report("protection-compliance");
-        sdThreshold = (double) workspace.report("social-distancing-threshold");
-        sdCompliance = (double) workspace.report("isolation-compliance");
-        lockdownThreshold = (double) workspace.report("lockdown-threshold");
-        lockdownCompliance = (double) workspace.report("isolation-compliance");
-        shieldingThreshold = (double) workspace.report("shielding-threshold");
-        shieldingCompliance = (double) workspace.report("isolation-compliance");
-        ttThreshold = (double) workspace.report("test-and-trace-threshold");
-
-        workspace.command("setup");
-        isPPEOn = (double) workspace.report("b-ppe");
-        isIsolationOn = (double) workspace.report("b-iso");
-        isLockdownOn = (double) workspace.report("b-lockdown");
-        isShieldingOn = (double) workspace.report("b-shield");
-        isTTOn = (double) workspace.report("b-tt");
-        isSDOn = (double) workspace.report("b-sd");
-
         averageInfections = 0;
         totalCost = 0;
 
@@ -302,126 +406,13 @@ public class ModelSimulation implements Serializable {
 
                 if (debug) System.out.println("Run " + (run + 1)); // Print run number
 
-                // set up arrays
-                double[][] results = new double[noLoops][noDays];
-                dailyPopulations = new double[noLoops][noDays];
-                offFromWork = new double[noLoops][noDays];
-                unproductiveWorkers = new double[noLoops][noDays];
-                hospitalAdmissions = new double[noLoops][noDays];
-                dailyDeaths = new double[noLoops][noDays];
-                averageDailyInfections = new double[noDays];
-                averageDailyPopulations = new double[noDays];
-                averageOffFromWork = new double[noDays];
-                averageUnproductive = new double[noDays];
-                averageAdmissions = new double[noDays];
-                averageDailyDeaths = new double[noDays];
-                dailyCost = new double[noDays];
-
-                // run model for noLoops to get the average - model writes data to file for analysis
-                for (int loop = 0; loop < noLoops; loop++) {
-                    workspace.command("setup");
-                    workspace.command("repeat simulation-time [go]");
-
-                }
-                workspace.command("close-file"); // close file to prevent access errors
-
-                // read in from the file the model wrote to
-                myObj = new File(Solver.projectPath + "testLog.txt");
-                myReader = new Scanner(myObj);
-                // for each loop and day, write data to respective entry in 2D array
+                // run model for noLoops to get the average
+                beginEvaluation();
                 for (int loop = 0; loop < noLoops; loop++) {
-                    for (int d = 0; d < noDays; d++) {
-                        data = myReader.nextLine();
-                        arrOfStr = data.split(" ");
-                        // index 0 is an empty space - skip to 1
-                        results[loop][d] = Double.parseDouble(arrOfStr[1]);
-                        //System.out.println("New Infected: " + workspace.report("new-infected"));
-                        dailyPopulations[loop][d] = Double.parseDouble(arrOfStr[2]);
-                        offFromWork[loop][d] = Double.parseDouble(arrOfStr[3]);
-                        unproductiveWorkers[loop][d] = Double.parseDouble(arrOfStr[4]);
-                        hospitalAdmissions[loop][d] = Double.parseDouble(arrOfStr[5]);
-                        dailyDeaths[loop][d] = Double.parseDouble(arrOfStr[6]);
-                    }
-                }
-                float inf = 0;
-                float dea = 0;
-                float iCost = 0;
-                float mCost = 0;
-
-                // for each day, gather running total of variable values for average
-                for (int d = 0; d < noDays; d++) {
-                    for (int k = 0; k < noLoops; k++) {
-                        averageDailyInfections[d] = averageDailyInfections[d] + results[k][d];
-                        averageDailyPopulations[d] = averageDailyPopulations[d] + dailyPopulations[k][d];
-                        averageOffFromWork[d] = averageOffFromWork[d] + offFromWork[k][d];
-                        averageUnproductive[d] = averageUnproductive[d] + unproductiveWorkers[k][d];
-                        averageAdmissions[d] = averageAdmissions[d] + hospitalAdmissions[k][d];
-                        averageDailyDeaths[d] = averageDailyDeaths[d] + dailyDeaths[k][d];
-                    }
-                    // get the average figures for each day based on noLoops
-                    averageDailyPopulations[d] = averageDailyPopulations[d] / noLoops;
-                    averageDailyInfections[d] = (averageDailyInfections[d] / noLoops);
-                    averageOffFromWork[d] = (averageOffFromWork[d] / noLoops);
-                    averageUnproductive[d] = (averageUnproductive[d] / noLoops);
-                    averageAdmissions[d] = (averageAdmissions[d] / noLoops);
-                    averageDailyDeaths[d] = (averageDailyDeaths[d] / noLoops);
-
-//                        eqnI = ((averageDailyInfections[d] * averageDailyWage * averageOffFromWork[d]) +
-//                                (averageDailyInfections[d] * averageDailyWage * averageUnproductive[d]) +
-//                                (averageDailyInfections[d] * hospitalCost * averageAdmissions[d]) + (averageDailyDeaths[d] * deathCost));
-
-                    // calculate current infection cost
-                    eqnI = ((averageDailyInfections[d] * averageDailyWage) + (averageDailyDeaths[d] * deathCost));
-//                        maxI = ((averageDailyPopulations[d] * averageDailyWage * averageOffFromWork[d]) +
-//                                (averageDailyPopulations[d] * averageDailyWage * averageUnproductive[d]) +
-//                                (averageDailyPopulations[d] * hospitalCost * averageAdmissions[d]) + (averageDailyDeaths[d] * deathCost));
-
-                    // worst case infection cost
-                    maxI = ((averageDailyPopulations[d] * averageDailyWage) + (averageDailyDeaths[d] * deathCost));
-                    if (maxI == 0) {
-                        normI = 0;
-                    } else {
-                        normI = eqnI / maxI; // normalize eqnI against maxI to keep proportion (in case populations change drastically, data still the same)
-                    }
-
-                    // calculate current control method cost
-                    eqnM = (((isPPEOn * (1 - (ppeThreshold / 100)) * ((ppeCompliance / 100) * averageDailyPopulations[d]) * ppeCostPerDay) +
-                            (isLockdownOn * (1 - (lockdownThreshold / 100)) * ((lockdownCompliance / 100) * averageDailyPopulations[d]) * lockdownCostPerDay) +
-                            (isSDOn * (1 - (sdThreshold / 100)) * ((sdCompliance / 100) * averageDailyPopulations[d]) * sdCostPerDay) +
-                            (isIsolationOn * (1 - (isolationThreshold / 100)) * ((isolationCompliance / 100) * averageDailyPopulations[d]) * isolationCostPerDay) +
-                            (isShieldingOn * (1 - (shieldingThreshold / 100)) * ((shieldingCompliance / 100) * averageDailyPopulations[d]) * shieldingCostPerDay) +
-                            (isTTOn * testAndTraceCost * (1 - (ttThreshold / 100)))));
-
-                    // calculate worst case control method cost
-                    maxM = (((1 * (1 - (0 / 100)) * ((ppeCompliance / 100) * averageDailyPopulations[d]) * ppeCostPerDay) +
-                            (1 * (1 - (0 / 100)) * ((lockdownCompliance / 100) * averageDailyPopulations[d]) * lockdownCostPerDay) +
-                            (1 * (1 - (0 / 100)) * ((sdCompliance / 100) * averageDailyPopulations[d]) * sdCostPerDay) +
-                            (1 * (1 - (0 / 100)) * ((isolationCompliance / 100) * averageDailyPopulations[d]) * isolationCostPerDay) +
-                            (1 * (1 - (0 / 100)) * ((shieldingCompliance / 100) * averageDailyPopulations[d]) * shieldingCostPerDay) +
-                            (1 * testAndTraceCost * (1 - (0 / 100)))));
-                    normM = eqnM / maxM; // same process for normalisation
-
-                    dailyCost[d] = Math.abs((infectionWeighting * normI) + (methodWeighting * normM)); // calculate the cost for each day, using weightings based on how valuable we want each half to be
-                    // add to running total for passing to the chromosome methods
-                    inf += averageDailyInfections[d];
-                    dea += averageDailyDeaths[d];
-                    iCost += infectionWeighting * normI;
-                    mCost += methodWeighting * normM;
+                    runReplicate();
                 }
-
-                // use chromosome methods to write data for analysis
-                chrome.setInfections(inf / noDays);
-                chrome.setTotalInfections(inf);
-                chrome.setDeaths(dea / noDays);
-                chrome.setTotalDeaths(dea);
-                chrome.setICost(iCost / noDays);
-                chrome.setMCost(mCost / noDays);
-                myReader.close(); // close reader to prevent any issues when looping back through with it open
+                totalCost = finishEvaluation(chrome);
             }
-
-            // calculate the total cost
-            totalCost = (float) DoubleStream.of(dailyCost).sum(); // quick way to sum all of the values in an array (Java 10+?)
-            totalCost = totalCost / noDays;
             writer.close(); // close the writer to commit the changes
         }
         // Error handling
@@ -433,5 +424,411 @@ public class ModelSimulation implements Serializable {
         if (debug) System.out.println("Writing to file complete");
         return totalCost;
     }
-}
 
+    /**
+     * Get ready to run replicates of the model with its current parameter settings. The
+     * thresholds, compliances and switches are read back from the model for the cost
+     * calculation, and the running statistics are cleared.
+     */
+    public void beginEvaluation() {
+        if (!captureInMemory) command("delete-file");
+        isolationThreshold = (double) report("isolation-threshold");
+        isolationCompliance = (double) report("isolation-compliance");
+        ppeThreshold = (double) report("protection-threshold");
+        ppeCompliance = (double) report("protection-compliance");
+        sdThreshold = (double) report("social-distancing-threshold");
+        sdCompliance = (double) report("isolation-compliance");
+        lockdownThreshold = (double) report("lockdown-threshold");
+        lockdownCompliance = (double) report("isolation-compliance");
+        shieldingThreshold = (double) report("shielding-threshold");
+        shieldingCompliance = (double) report("isolation-compliance");
+        ttThreshold = (double) report("test-and-trace-threshold");
+
+        setupModel(loopsRun);
+        isPPEOn = (double) report("b-ppe");
+        isIsolationOn = (double) report("b-iso");
+        isLockdownOn = (double) report("b-lockdown");
+        isShieldingOn = (double) report("b-shield");
+        isTTOn = (double) report("b-tt");
+        isSDOn = (double) report("b-sd");
+        // Setup creates number-people and migration only adds people while there are fewer than carrying-capacity
+        maxPopulation = (double) report("max (list number-people carrying-capacity)");
+
+        // In CostKernel.PPE ... SHIELDING order
+        CostPolicy policy = new CostPolicy(
+                new double[]{isPPEOn, isLockdownOn, isSDOn, isIsolationOn, isShieldingOn},
+                new double[]{ppeThreshold, lockdownThreshold, sdThreshold, isolationThreshold, shieldingThreshold},
+                CostPolicy.compliances(ppeCompliance, isolationCompliance),
+                isTTOn, ttThreshold, maxPopulation);
+        costs.prepare(policy);
+        for (CostModel model : otherCosts) model.prepare(policy);
+
+        statistics.reset();
+        Arrays.fill(finishedTotals, 0);
+        pendingCount = 0;
+        loopsRun = 0;
+        aborted = false;
+    }
+
+    /**
+     * Run the model once for simulation-time days and fold its daily counters
+     * into the running statistics.
+     *
+     * @return The cost of this replicate on its own, as simulate would score it
+     */
+    public double runReplicate() throws FileNotFoundException {
+        return runReplicate(Double.POSITIVE_INFINITY, 1);
+    }
+
+    /**
+     * Run the model once, as above, but advance it in chunks of 'abortChunk' days and give
+     * up as soon as the evaluation as a whole is bound to score worse than 'cutoff'. The
+     * score is the cost of the average of the replicates, not the average of their costs,
+     * so the bound comes from the cost model (see CostModel.lowerBound): it is the least
+     * the average of up to 'replicates' replicates could cost, given every day of the
+     * replicates that finished and the days this one has run so far. If we give up,
+     * isAborted() becomes true and the replicate is not counted. Chunking needs the
+     * counters in memory, so the cutoff is ignored when capturing to file.
+     *
+     * @param cutoff     The score beyond which the evaluation is no longer worth finishing
+     * @param replicates The most replicates the evaluation could average
+     * @return The cost of this replicate on its own, or the bound that exceeded 'cutoff'
+     */
+    public double runReplicate(double cutoff, int replicates) throws FileNotFoundException {
+        double cost = 0;
+        long start;
+        if (captureInMemory && cutoff != Double.POSITIVE_INFINITY) {
+            setupModel(loopsRun);
+            Arrays.fill(replicateTotals, 0);
+            int d = 0;
+            while (d < noDays) {
+                int end = Math.min(d + abortChunk, noDays);
+                runTicks("repeat " + (end - d) + " [go-capture]", end - d);
+                captureTicks(d, end);
+
+                start = metrics.start();
+                cost += replicateCost(d, end);
+                double bound = scoreBound(d, end, replicates);
+                d = end;
+                metrics.record(Metrics.COST, start);
+
+                if (bound > cutoff) {
+                    aborted = true;
+                    abortBound = bound;
+                    metrics.increment(Metrics.ABORTED);
+                    return abortBound;
+                }
+            }
+            statistics.add(replicate);
+            storeReplicate();
+            for (int s = 0; s < SERIES; s++) finishedTotals[s] += replicateTotals[s];
+            loopsRun++;
+            metrics.increment(Metrics.REPLICATES);
+            return cost / noDays;
+        }
+
+        if (captureInMemory) {
+            setupModel(loopsRun);
+            runTicks("repeat simulation-time [go-capture]", noDays);
+            captureTicks(0, noDays);
+        } else {
+            // start each replicate with a fresh log file so that it only holds this run
+            command("close-file");
+            command("delete-file");
+            setupModel(loopsRun);
+            runTicks("repeat simulation-time [go]", noDays);
+            command("close-file"); // close file to prevent access errors
+            readTickLog();
+        }
+        statistics.add(replicate);
+        storeReplicate();
+        loopsRun++;
+        metrics.increment(Metrics.REPLICATES);
+
+        start = metrics.start();
+        cost += replicateCost(0, noDays);
+        metrics.record(Metrics.COST, start);
+        return cost / noDays;
+    }
+
+    /**
+     * Keep the daily series of the replicates of every evaluation that finishes in 'store',
+     * filed under the configuration given to setTrajectoryKey and the seeds they ran with.
+     * Evaluations that are abandoned early aren't kept.
+     *
+     * @param store The store, or null to stop keeping them
+     */
+    public void setTrajectoryStore(TrajectoryStore store) {
+        trajectories = store;
+    }
+
+    /**
+     * @param parameters The configuration of the replicates about to be run
+     */
+    public void setTrajectoryKey(PolicyParameters parameters) {
+        trajectoryKey = parameters;
+    }
+
+    // Hold on to the replicate that has just finished until we know whether the evaluation will
+    private void storeReplicate() {
+        if (trajectories == null || trajectoryKey == null) return;
+        if (pendingTrajectories.size() == pendingCount) pendingTrajectories.add(new double[SERIES][noDays]);
+        if (pendingSeeds.length == pendingCount) pendingSeeds = Arrays.copyOf(pendingSeeds, pendingCount * 2 + 1);
+        double[][] copy = pendingTrajectories.get(pendingCount);
+        for (int s = 0; s < SERIES; s++) System.arraycopy(replicate[s], 0, copy[s], 0, noDays);
+        pendingSeeds[pendingCount] = seeds == null ? 0 : seeds.replicateSeed(seedGeneration, loopsRun);
+        pendingCount++;
+    }
+
+    // Store the replicates of the evaluation that has just finished, if we are storing them
+    private void storeEvaluation() {
+        if (trajectories == null || trajectoryKey == null || pendingCount == 0) return;
+        try {
+            trajectories.addEvaluation(trajectoryKey, seeds != null, seedGeneration, pendingSeeds, pendingTrajectories, pendingCount);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store trajectories", e);
+        }
+        pendingCount = 0;
+    }
+
+    // Run the model's setup procedure for replicate 'replicate', keeping track of how long it takes
+    private void setupModel(int replicate) {
+        long start = metrics.start();
+        if (seeds != null) {
+            // Seed before setup, since setup places the people at random
+            setGlobal("replicate-seed", (double) seeds.replicateSeed(seedGeneration, replicate));
+            command("random-seed replicate-seed");
+        }
+        command("setup");
+        metrics.record(Metrics.NETLOGO_SETUP, start);
+    }
+
+    // Run 'days' ticks of the model with 'source', keeping track of how long they take
+    private void runTicks(String source, int days) {
+        long start = metrics.start();
+        command(source);
+        metrics.record(Metrics.TICKS, start);
+        metrics.add(Metrics.TICKS_SIMULATED, days);
+    }
+
+    // The cost of days 'from' up to 'to' of the current replicate on its own
+    private double replicateCost(int from, int to) {
+        return costs.sumCost(replicate, from, to);
+    }
+
+    // Add days 'from' up to 'to' of the current replicate to what we have seen and bound
+    // the score of the evaluation. Replicates run without a cutoff aren't in the totals,
+    // which only makes the bound lower, so it still holds
+    private double scoreBound(int from, int to, int replicates) {
+        for (int s = 0; s < SERIES; s++) {
+            double[] values = replicate[s];
+            double total = 0;
+            for (int d = from; d < to; d++) total += values[d];
+            replicateTotals[s] += total;
+            seenTotals[s] = finishedTotals[s] + replicateTotals[s];
+        }
+        return costs.lowerBound(seenTotals, replicates, noDays) / noDays;
+    }
+
+    /**
+     * Run up to 'noLoops' replicates of the current parameters and score them, stopping
+     * as soon as their average is bound to cost more than 'cutoff'.
+     *
+     * @param noLoops    How many replicates to average
+     * @param chrome     The chromosome being scored
+     * @param cutoff     The score beyond which the evaluation is no longer worth finishing
+     * @return The average daily cost, or the bound that exceeded 'cutoff'
+     */
+    public float evaluate(int noLoops, Chromosome chrome, double cutoff) throws FileNotFoundException {
+        beginEvaluation();
+        for (int loop = 0; loop < noLoops; loop++) {
+            runReplicate(cutoff, noLoops);
+            if (aborted) return abortEvaluation(chrome);
+        }
+        return finishEvaluation(chrome);
+    }
+
+    /**
+     * Mark 'chrome' as aborted after a replicate gave up. Its fitness is the lower bound on
+     * the evaluation's score that exceeded the cutoff, so it is still ranked below
+     * everything that finished.
+     *
+     * @param chrome The chromosome being scored
+     * @return The lower bound on its score
+     */
+    public float abortEvaluation(Chromosome chrome) {
+        if (!captureInMemory) command("close-file");
+        pendingCount = 0;   // Its replicates don't make up an evaluation, so they aren't stored
+        chrome.setAborted(true);
+        return (float) abortBound;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public void setAbortChunk(int days) {
+        abortChunk = days;
+    }
+
+    /**
+     * Work out the cost of each day from the average of the replicates we have run and
+     * write the statistics into 'chrome'.
+     *
+     * @param chrome The chromosome being scored
+     * @return The average daily cost
+     */
+    public float finishEvaluation(Chromosome chrome) {
+        if (!captureInMemory) command("close-file");
+        storeEvaluation();
+
+        // the running means are already the average figures for each day
+        averageDailyInfections = statistics.getMeans(INFECTED);
+        averageDailyPopulations = statistics.getMeans(POPULATION);
+        averageOffFromWork = statistics.getMeans(OFF_WORK);
+        averageUnproductive = statistics.getMeans(UNPRODUCTIVE);
+        averageAdmissions = statistics.getMeans(ADMISSIONS);
+        averageDailyDeaths = statistics.getMeans(DEATHS);
+
+        long start = metrics.start();
+        for (int series = 0; series < SERIES; series++) meanSeries[series] = statistics.getMeans(series);
+        float cost = score(meanSeries, costs, dailyCost, chrome);
+        costResults[0] = cost;
+
+        // The other models cost the same averages, so they don't need any more runs of the model
+        for (int i = 0; i < otherCosts.size(); i++)
+            costResults[i + 1] = otherCosts.get(i).dailyCosts(meanSeries, otherDailyCost) / noDays;
+
+        metrics.record(Metrics.COST, start);
+        return cost;
+    }
+
+    /**
+     * Score the average daily series of some replicates and write the statistics into
+     * 'chrome'. This is all finishEvaluation does once the model has run, so it also
+     * works on replicates read back from a TrajectoryStore.
+     *
+     * @param means     The average of each series on each day
+     * @param costs     The cost model, already prepared for the policy
+     * @param dailyCost Where to put each day's cost, as long as the days to score
+     * @param chrome    The chromosome being scored
+     * @return The average daily cost
+     */
+    static float score(double[][] means, CostModel costs, double[] dailyCost, Chromosome chrome) {
+        int noDays = dailyCost.length;
+        float inf = 0;
+        float dea = 0;
+        for (int d = 0; d < noDays; d++) {
+            // add to running total for passing to the chromosome methods
+            inf += means[INFECTED][d];
+            dea += means[DEATHS][d];
+        }
+        // calculate the cost for each day, using weightings based on how valuable we want each half to be
+        float cost = (float) costs.dailyCosts(means, dailyCost);
+
+        // use chromosome methods to write data for analysis
+        chrome.setInfections(inf / noDays);
+        chrome.setTotalInfections(inf);
+        chrome.setDeaths(dea / noDays);
+        chrome.setTotalDeaths(dea);
+        chrome.setICost((float) costs.getInfectionCost() / noDays);
+        chrome.setMCost((float) costs.getMethodCost() / noDays);
+        return cost / noDays;
+    }
+
+    /**
+     * The cost model every workspace scores with unless told otherwise.
+     */
+    static CostModel defaultCostModel() {
+        return new CostKernel(infectionWeighting, methodWeighting);
+    }
+
+    /**
+     * @return The model scoring evaluations
+     */
+    public CostModel getCostModel() {
+        return costs;
+    }
+
+    public int getLoopsRun() {
+        return loopsRun;
+    }
+
+    /**
+     * Score evaluations with 'model' instead of the usual CostKernel.
+     */
+    public void setCostModel(CostModel model) {
+        costs = model;
+    }
+
+    /**
+     * Cost every evaluation under 'model' as well, without changing its score.
+     * Each workspace needs its own instance.
+     */
+    public void addCostModel(CostModel model) {
+        otherCosts.add(model);
+        costResults = new double[otherCosts.size() + 1];
+    }
+
+    /**
+     * @return The model scoring evaluations followed by those added with addCostModel
+     */
+    public List<CostModel> getCostModels() {
+        List<CostModel> models = new ArrayList<>();
+        models.add(costs);
+        models.addAll(otherCosts);
+        return models;
+    }
+
+    /**
+     * @return The average daily cost of the last evaluation under each of getCostModels()
+     */
+    public double[] getCosts() {
+        return costResults.clone();
+    }
+
+    /**
+     * Copy days 'from' up to 'to' of the counters the model kept in tick-log into the
+     * current replicate. Each entry of tick-log is the list reported by tick-counters.
+     *
+     * @param from The first day to copy
+     * @param to   The day after the last one to copy
+     */
+    void captureTicks(int from, int to) {
+        long start = metrics.start();
+        LogoList ticks = (LogoList) report("tick-log");
+        for (int d = from; d < to; d++) {
+            LogoList counters = (LogoList) ticks.get(d);
+            for (int series = 0; series < SERIES; series++)
+                replicate[series][d] = (Double) counters.get(series);
+        }
+        metrics.record(Metrics.LOG_PARSING, start);
+    }
+
+    /**
+     * Read the log file the model wrote during the last run into the current replicate.
+     */
+    void readTickLog() throws FileNotFoundException {
+        long start = metrics.start();
+        // read in from the file the model wrote to
+        myObj = new File(logFile);
+        myReader = new Scanner(myObj);
+        for (int d = 0; d < noDays; d++) {
+            data = myReader.nextLine();
+            arrOfStr = data.split(" ");
+            // index 0 is an empty space - skip to 1
+            for (int series = 0; series < SERIES; series++)
+                replicate[series][d] = Double.parseDouble(arrOfStr[series + 1]);
+        }
+        myReader.close(); // close reader to prevent any issues when looping back through with it open
+        metrics.record(Metrics.LOG_PARSING, start);
+    }
+
+    /**
+     * The running statistics of the replicates run so far, including a confidence
+     * interval for every day's average.
+     */
+    public DailyStatistics getDailyStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,220 @@
+package com.example;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * NSGA2 evolves a whole Pareto front of policies instead of a single best one.
+ * Rather than folding the infection cost and the method cost into one fitness
+ * with fixed weightings, it treats them (and optionally total deaths) as
+ * separate objectives to minimise. Each generation the parents and children
+ * are ranked by fast non-dominated sorting and ties within a front are broken
+ * by crowding distance, so the front stays spread out along the trade-off.
+ *
+ * Any weighting of the two costs picks its best policy from the front, so one
+ * run takes the place of a sweep over weightings. The fitness the Solver
+ * records is still set, but NSGA2 never looks at it.
+ */
+public class NSGA2 {
+
+    private final Solver s;
+    private final GA ga;                // Supplies crossover, mutation and the random number generator
+    private final boolean deaths;       // Whether total deaths is a third objective
+
+    /**
+     * @param s      The solver to score chromosomes with
+     * @param ga     The GA whose operators we use
+     * @param deaths True to minimise total deaths as well as the two costs
+     */
+    public NSGA2(Solver s, GA ga, boolean deaths) {
+        this.s = s;
+        this.ga = ga;
+        this.deaths = deaths;
+    }
+
+    /**
+     * Evolve a population and return its non-dominated chromosomes.
+     *
+     * @param parameters     The number of genes in each chromosome
+     * @param popsize        The size of the population
+     * @param generations    How many generations to run it for
+     * @param mutationRate   The mutation rate
+     * @return The Pareto front of the final population, in order of infection cost
+     */
+    public Chromosome[] evolveNetLogo(int parameters, int popsize, int generations, float mutationRate) throws FileNotFoundException {
+        // Racing and early abort only make sense for a single fitness
+        s.setSelectionThreshold(Float.NaN);
+        s.setAbortCutoff(Float.POSITIVE_INFINITY);
+
+        Chromosome[] pop = new Chromosome[popsize];
+        for (int p = 0; p < popsize; p++)
+            pop[p] = new Chromosome(parameters, 1, ga.getRandom());
+        s.setSeedGeneration(0);
+        s.scorePopulation(pop);
+
+        int[] rank = new int[popsize];
+        double[] crowding = new double[popsize];
+        rankPopulation(pop, rank, crowding);
+
+        for (int g = 0; g < generations; g++) {
+            // Breed children using crowded tournaments
+            long start = s.getMetrics().start();
+            Chromosome[] child = new Chromosome[popsize];
+            for (int c = 0; c < popsize; c++) {
+                Chromosome p1 = pop[crowdedTournament(rank, crowding)];
+                Chromosome p2 = pop[crowdedTournament(rank, crowding)];
+                child[c] = ga.onePointCrossover(p1, p2);
+                child[c].mutateReal(mutationRate, ga.getRandom());
+            }
+            s.getMetrics().record(Metrics.GA_OPERATORS, start);
+            s.setSeedGeneration(g + 1);
+            s.scorePopulation(child);
+
+            // Parents and children compete for a place in the next generation
+            Chromosome[] both = new Chromosome[popsize * 2];
+            System.arraycopy(pop, 0, both, 0, popsize);
+            System.arraycopy(child, 0, both, popsize, popsize);
+            pop = survivors(both, popsize);
+            rankPopulation(pop, rank, crowding);
+
+            int size = 0;
+            for (int r : rank) if (r == 0) size++;
+            System.out.println(g + "\tfront " + size);
+        }
+
+        List<Chromosome> front = new ArrayList<>();
+        for (int p = 0; p < popsize; p++) if (rank[p] == 0) front.add(pop[p]);
+        front.sort((a, b) -> Float.compare(a.getICost(), b.getICost()));
+        return front.toArray(new Chromosome[0]);
+    }
+
+    /**
+     * The objectives for 'c', all to be minimised.
+     */
+    public double[] objectives(Chromosome c) {
+        if (deaths) return new double[]{c.getICost(), c.getMCost(), c.getTotalDeaths()};
+        return new double[]{c.getICost(), c.getMCost()};
+    }
+
+    /**
+     * @return True if 'a' is no worse than 'b' in every objective and better in at least one
+     */
+    public static boolean dominates(double[] a, double[] b) {
+        boolean better = false;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] > b[i]) return false;
+            if (a[i] < b[i]) better = true;
+        }
+        return better;
+    }
+
+    /**
+     * Sort 'pop' into non-dominated fronts. Front 0 is dominated by nobody, front 1
+     * only by members of front 0, and so on.
+     *
+     * @param obj The objectives of each chromosome
+     * @return The fronts, each a list of indexes into 'obj'
+     */
+    public static List<List<Integer>> nonDominatedSort(double[][] obj) {
+        int n = obj.length;
+        List<List<Integer>> dominated = new ArrayList<>(n);   // Who each one dominates
+        int[] dominatedBy = new int[n];                       // How many dominate each one
+        List<List<Integer>> fronts = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+
+        for (int p = 0; p < n; p++) {
+            dominated.add(new ArrayList<>());
+            for (int q = 0; q < n; q++) {
+                if (dominates(obj[p], obj[q])) dominated.get(p).add(q);
+                else if (dominates(obj[q], obj[p])) dominatedBy[p]++;
+            }
+            if (dominatedBy[p] == 0) current.add(p);
+        }
+
+        // Peel off one front at a time
+        while (!current.isEmpty()) {
+            fronts.add(current);
+            List<Integer> next = new ArrayList<>();
+            for (int p : current)
+                for (int q : dominated.get(p))
+                    if (--dominatedBy[q] == 0) next.add(q);
+            current = next;
+        }
+        return fronts;
+    }
+
+    /**
+     * Work out the crowding distance of each member of 'front': how far apart its
+     * neighbours along each objective are. The ends of the front are infinitely far.
+     *
+     * @param obj      The objectives of each chromosome
+     * @param front    Indexes into 'obj' of one front
+     * @param distance Where to put each member's distance, indexed like 'obj'
+     */
+    public static void crowdingDistance(double[][] obj, List<Integer> front, double[] distance) {
+        for (int p : front) distance[p] = 0;
+        if (front.size() <= 2) {
+            for (int p : front) distance[p] = Double.POSITIVE_INFINITY;
+            return;
+        }
+
+        Integer[] sorted = front.toArray(new Integer[0]);
+        for (int m = 0; m < obj[sorted[0]].length; m++) {
+            final int objective = m;
+            Arrays.sort(sorted, (a, b) -> Double.compare(obj[a][objective], obj[b][objective]));
+            double min = obj[sorted[0]][m];
+            double max = obj[sorted[sorted.length - 1]][m];
+            distance[sorted[0]] = Double.POSITIVE_INFINITY;
+            distance[sorted[sorted.length - 1]] = Double.POSITIVE_INFINITY;
+            if (max == min) continue;
+            for (int i = 1; i < sorted.length - 1; i++)
+                distance[sorted[i]] += (obj[sorted[i + 1]][m] - obj[sorted[i - 1]][m]) / (max - min);
+        }
+    }
+
+    // Fill in the rank and crowding distance of every member of 'pop'
+    private void rankPopulation(Chromosome[] pop, int[] rank, double[] crowding) {
+        double[][] obj = objectivesOf(pop);
+        List<List<Integer>> fronts = nonDominatedSort(obj);
+        for (int f = 0; f < fronts.size(); f++) {
+            for (int p : fronts.get(f)) rank[p] = f;
+            crowdingDistance(obj, fronts.get(f), crowding);
+        }
+    }
+
+    // Pick the best 'size' of 'both', a whole front at a time and then the least crowded of the last front
+    private Chromosome[] survivors(Chromosome[] both, int size) {
+        double[][] obj = objectivesOf(both);
+        double[] distance = new double[both.length];
+        Chromosome[] next = new Chromosome[size];
+        int filled = 0;
+
+        for (List<Integer> front : nonDominatedSort(obj)) {
+            crowdingDistance(obj, front, distance);
+            if (filled + front.size() > size)
+                front.sort((a, b) -> Double.compare(distance[b], distance[a]));
+            for (int p : front) {
+                if (filled == size) break;
+                next[filled++] = both[p];
+            }
+            if (filled == size) break;
+        }
+        return next;
+    }
+
+    // A binary tournament preferring the lower rank, then the less crowded
+    private int crowdedTournament(int[] rank, double[] crowding) {
+        int a = ga.getRandom().nextInt(rank.length);
+        int b = ga.getRandom().nextInt(rank.length);
+        if (rank[a] != rank[b]) return rank[a] < rank[b] ? a : b;
+        return crowding[a] >= crowding[b] ? a : b;
+    }
+
+    private double[][] objectivesOf(Chromosome[] pop) {
+        double[][] obj = new double[pop.length][];
+        for (int p = 0; p < pop.length; p++) obj[p] = objectives(pop[p]);
+        return obj;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelEvaluator scores a whole population at once by handing each
+ * chromosome to its own thread. Each thread borrows a workspace from the
+ * Solver's WorkspacePool, so the number of threads matches the pool size.
+ * Scoring a chromosome only touches that chromosome, so the results are the
+ * same as scoring the population one after another.
+ */
+public class ParallelEvaluator implements Evaluator {
+
+    private final Solver s;
+    private final ExecutorService executor;
+    private final int threads;
+
+    /**
+     * @param s          The solver that will score each chromosome
+     * @param threads    How many chromosomes to score at once
+     */
+    public ParallelEvaluator(Solver s, int threads) {
+        this.s = s;
+        this.threads = threads;
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "evaluator");
+            t.setDaemon(true); // Don't keep the JVM alive once the GA has finished
+            return t;
+        });
+    }
+
+    /**
+     * Score every chromosome in 'pop' and wait for them all to finish.
+     *
+     * @param pop    The chromosomes to score
+     */
+    public void scoreAll(Chromosome[] pop) throws FileNotFoundException {
+        List<Future<Float>> scores = new ArrayList<>(pop.length);
+        for (Chromosome c : pop)
+            scores.add(executor.submit(() -> s.scoreNetLogoSolution(c)));
+
+        // Join before handing the population back to the GA
+        for (Future<Float> score : scores) {
+            try {
+                score.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while scoring population", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof FileNotFoundException) throw (FileNotFoundException) e.getCause();
+                throw new IllegalStateException("Failed to score chromosome", e.getCause());
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return threads;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,5 +1,7 @@
 package com.example;
 
+import java.util.Random;
+
 /**
  * The Pattern class creates a random pattern of either 1's or 0's which
  * can be referenced via an x and a y coordinate for a given bit. The
@@ -44,6 +46,24 @@ public class Pattern {
 
     }
 
+    /**
+     * Create a new pattern with random values drawn from 'random', so that
+     * a seeded generator always gives the same pattern.
+     *
+     * @param x      The length of the new pattern
+     * @param y      The height of the new pattern
+     * @param random Where the random values come from
+     */
+    public Pattern(int x, int y, Random random) {
+        xdim = x;
+        ydim = y;
+        size = xdim * ydim;
+        shape = new float[x * y];
+
+        for (int v = 0; v < size; v++)
+            shape[v] = random.nextFloat();
+    }
+
     /**
      * Creates a new blank pattern based on the 'template'
      * dimensions. All bit values are set to 0.
@@ -51,16 +71,22 @@ public class Pattern {
      * @param template The template pattern to base the new Pattern on
      */
     public Pattern(Pattern template) {
-        this(template.xdim, template.ydim);
+        this(template.xdim, template.ydim, new float[template.size]);
+    }
+
+    // A pattern holding 'shape', which is used as it is rather than copied
+    private Pattern(int x, int y, float[] shape) {
+        xdim = x;
+        ydim = y;
+        size = xdim * ydim;
+        this.shape = shape;
     }
 
     /**
      * Returns a duplicate of the current Pattern
      */
     public Pattern clone() {
-        Pattern p = new Pattern(xdim, ydim);
-        p.shape = this.shape.clone();
-        return p;
+        return new Pattern(xdim, ydim, shape.clone());
     }
 
     // Accessor methods for the Pattern attributes
@@ -0,0 +1,87 @@
+package com.example;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * PolicyParameters is the NetLogo configuration a chromosome decodes to. The
+ * first six genes are rounded to switches and the last six are scaled to
+ * thresholds and rounded to three decimal places, so many chromosomes share
+ * the same PolicyParameters. Two equal PolicyParameters set the model up in
+ * exactly the same way, which lets us use them as keys when caching results.
+ */
+public class PolicyParameters {
+
+    // Switch and threshold names in the order they appear in the chromosome
+    public static final String[] SWITCHES = {"ppe?", "lockdown?", "shielding?", "self-isolation?", "test-and-trace?", "social-distancing?"};
+    public static final String[] THRESHOLDS = {"protection-threshold", "lockdown-threshold", "shielding-threshold",
+            "isolation-threshold", "test-and-trace-threshold", "social-distancing-threshold"};
+    public static final int NUM_PARAMETERS = SWITCHES.length + THRESHOLDS.length;
+
+    private final boolean[] switches;
+    private final double[] thresholds;
+
+    public PolicyParameters(boolean[] switches, double[] thresholds) {
+        this.switches = switches.clone();
+        this.thresholds = thresholds.clone();
+    }
+
+    /**
+     * Decode a chromosome the same way the solver always has: a gene of 0.5 or
+     * more turns a switch on and thresholds are percentages to three decimal places.
+     *
+     * @param c The chromosome to decode
+     * @return The configuration it represents
+     */
+    public static PolicyParameters fromChromosome(Chromosome c) {
+        boolean[] switches = new boolean[SWITCHES.length];
+        double[] thresholds = new double[THRESHOLDS.length];
+
+        for (int i = 0; i < switches.length; i++)
+            switches[i] = c.getGene(i) >= 0.5;
+        for (int i = 0; i < thresholds.length; i++)
+            thresholds[i] = Double.parseDouble(String.format(Locale.ROOT, "%.3f", c.getGene(SWITCHES.length + i) * 100.0f));
+
+        return new PolicyParameters(switches, thresholds);
+    }
+
+    /**
+     * Set the switches and thresholds in the model.
+     *
+     * @param ms The simulation to configure
+     */
+    public void applyTo(ModelSimulation ms) {
+        for (int i = 0; i < switches.length; i++)
+            ms.setParameter(SWITCHES[i], switches[i]);
+        for (int i = 0; i < thresholds.length; i++)
+            ms.setParameter(THRESHOLDS[i], thresholds[i]);
+    }
+
+    public boolean getSwitch(int i) {
+        return switches[i];
+    }
+
+    public double getThreshold(int i) {
+        return thresholds[i];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PolicyParameters)) return false;
+        PolicyParameters other = (PolicyParameters) o;
+        return Arrays.equals(switches, other.switches) && Arrays.equals(thresholds, other.thresholds);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(switches) + Arrays.hashCode(thresholds);
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (boolean b : switches) sb.append(b ? '1' : '0');
+        for (double t : thresholds) sb.append(String.format(Locale.ROOT, " %.3f", t));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,264 @@
+package com.example;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Population holds a whole generation of solutions in a handful of flat
+ * arrays instead of an array of Chromosomes: the genes of member i are
+ * genes[i * numGenes] up to genes[(i + 1) * numGenes], and its fitness and
+ * other results sit at position i of their own arrays. The GA operators work
+ * on the rows in place, so a run that keeps two populations and swaps them
+ * round each generation breeds without allocating anything, however large
+ * the population.
+ *
+ * Every operator makes the same random choices in the same order as its
+ * Chromosome version in GA, so a seeded run breeds the same children either way.
+ *
+ * The Solver still scores Chromosomes, so each member has a Chromosome that
+ * stands in for it while it is scored: toChromosomes() fills them with the
+ * genes and readScores() takes the results back.
+ */
+public class Population {
+
+    private final int size;                 // How many members there are
+    private final int numGenes;             // How many genes each member has
+    private final float[] genes;            // The genes of every member, a row of numGenes each
+    private final float[] fitness;
+    private final float[] infections;
+    private final float[] totalInfections;
+    private final float[] deaths;
+    private final float[] totalDeaths;
+    private final float[] iCost;
+    private final float[] mCost;
+    private final boolean[] aborted;        // true if scoring gave up early, so the fitness is only a lower bound
+    private final float[] sorted;           // Somewhere to sort the fitnesses when finding the median
+    private Chromosome[] chromosomes;       // Stand ins for scoring, made the first time they are needed
+
+    /**
+     * Create a population of 'size' members with 'numGenes' genes each, all 0.
+     */
+    public Population(int size, int numGenes) {
+        this.size = size;
+        this.numGenes = numGenes;
+        genes = new float[size * numGenes];
+        fitness = new float[size];
+        infections = new float[size];
+        totalInfections = new float[size];
+        deaths = new float[size];
+        totalDeaths = new float[size];
+        iCost = new float[size];
+        mCost = new float[size];
+        aborted = new boolean[size];
+        sorted = new float[size];
+    }
+
+    /**
+     * A population holding a copy of the genes and results of 'pop'.
+     */
+    public static Population of(Chromosome[] pop) {
+        Population p = new Population(pop.length, pop[0].numGenes());
+        for (int i = 0; i < pop.length; i++) p.set(i, pop[i]);
+        return p;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int numGenes() {
+        return numGenes;
+    }
+
+    /**
+     * Give every gene a random value from 'random', in the order that
+     * creating the Chromosomes one after another would have.
+     */
+    public void randomise(Random random) {
+        for (int g = 0; g < genes.length; g++) genes[g] = random.nextFloat();
+        clearScores(0, size);
+    }
+
+    public float getGene(int i, int g) {
+        return genes[i * numGenes + g];
+    }
+
+    public void setGene(int i, int g, float value) {
+        genes[i * numGenes + g] = value;
+    }
+
+    public float getFitness(int i) {
+        return fitness[i];
+    }
+
+    public boolean isAborted(int i) {
+        return aborted[i];
+    }
+
+    /**
+     * Copy the genes and results of 'c' into member 'i'.
+     */
+    public void set(int i, Chromosome c) {
+        System.arraycopy(c.getPattern().getGenes(), 0, genes, i * numGenes, numGenes);
+        readScore(i, c);
+    }
+
+    /**
+     * Copy the genes and results of member 'i' into 'c'.
+     */
+    public void get(int i, Chromosome c) {
+        System.arraycopy(genes, i * numGenes, c.getPattern().getGenes(), 0, numGenes);
+        c.setFitness(fitness[i]);
+        c.setInfections(infections[i]);
+        c.setTotalInfections(totalInfections[i]);
+        c.setDeaths(deaths[i]);
+        c.setTotalDeaths(totalDeaths[i]);
+        c.setICost(iCost[i]);
+        c.setMCost(mCost[i]);
+        c.setAborted(aborted[i]);
+    }
+
+    /**
+     * @return A new Chromosome holding a copy of member 'i'
+     */
+    public Chromosome toChromosome(int i) {
+        Chromosome c = new Chromosome(numGenes, 1);
+        get(i, c);
+        return c;
+    }
+
+    /**
+     * Fill the stand in Chromosomes with every member, ready to be scored. They
+     * belong to this population and are overwritten the next time this is called.
+     *
+     * @return The stand ins, in the same order as the members
+     */
+    public Chromosome[] toChromosomes() {
+        if (chromosomes == null) {
+            chromosomes = new Chromosome[size];
+            for (int i = 0; i < size; i++) chromosomes[i] = new Chromosome(numGenes, 1);
+        }
+        for (int i = 0; i < size; i++) get(i, chromosomes[i]);
+        return chromosomes;
+    }
+
+    /**
+     * Take the results of scoring 'scored', which came from toChromosomes(), back into the members.
+     */
+    public void readScores(Chromosome[] scored) {
+        for (int i = 0; i < size; i++) readScore(i, scored[i]);
+    }
+
+    private void readScore(int i, Chromosome c) {
+        fitness[i] = c.getFitness();
+        infections[i] = c.getInfections();
+        totalInfections[i] = c.getTotalInfections();
+        deaths[i] = c.getDeaths();
+        totalDeaths[i] = c.getTotalDeaths();
+        iCost[i] = c.getICost();
+        mCost[i] = c.getMCost();
+        aborted[i] = c.isAborted();
+    }
+
+    // Forget the results of members 'from' up to 'to', as a new Chromosome would have none
+    private void clearScores(int from, int to) {
+        Arrays.fill(fitness, from, to, 0.0f);
+        Arrays.fill(infections, from, to, 0.0f);
+        Arrays.fill(totalInfections, from, to, 0.0f);
+        Arrays.fill(deaths, from, to, 0.0f);
+        Arrays.fill(totalDeaths, from, to, 0.0f);
+        Arrays.fill(iCost, from, to, 0.0f);
+        Arrays.fill(mCost, from, to, 0.0f);
+        Arrays.fill(aborted, from, to, false);
+    }
+
+    /**
+     * Copy member 'from' of 'source' over member 'to' of this population, results and all.
+     */
+    public void copy(Population source, int from, int to) {
+        System.arraycopy(source.genes, from * numGenes, genes, to * numGenes, numGenes);
+        fitness[to] = source.fitness[from];
+        infections[to] = source.infections[from];
+        totalInfections[to] = source.totalInfections[from];
+        deaths[to] = source.deaths[from];
+        totalDeaths[to] = source.totalDeaths[from];
+        iCost[to] = source.iCost[from];
+        mCost[to] = source.mCost[from];
+        aborted[to] = source.aborted[from];
+    }
+
+    // Whether member 'a' is better than member 'b'. An aborted evaluation only
+    // has a lower bound for its fitness, so one that finished always wins
+    private boolean better(int a, int b) {
+        if (aborted[a] != aborted[b]) return aborted[b];
+        return fitness[a] < fitness[b];
+    }
+
+    /**
+     * @return The index of the best member (where best is low in this case)
+     */
+    public int getIndexBest() {
+        int best = 0;
+        for (int p = 1; p < size; p++)
+            if (better(p, best)) best = p;
+        return best;
+    }
+
+    /**
+     * @return The index of the worst member (where worst is high in this case)
+     */
+    public int getIndexWorst() {
+        int worst = 0;
+        for (int p = 1; p < size; p++)
+            if (fitness[p] > fitness[worst]) worst = p;
+        return worst;
+    }
+
+    /**
+     * @return The median fitness of the population
+     */
+    public float getMedianFitness() {
+        System.arraycopy(fitness, 0, sorted, 0, size);
+        Arrays.sort(sorted);
+
+        int mid = size / 2;
+        if (size % 2 == 1) return sorted[mid];
+        return (sorted[mid - 1] + sorted[mid]) / 2;
+    }
+
+    /**
+     * Pick 'tournamentSize' members at random and return the index of the best of them.
+     */
+    public int tournamentSelect(int tournamentSize, Random random) {
+        int best = (int) (random.nextDouble() * size);
+        for (int items = 1; items < tournamentSize; items++) {
+            int individual = (int) (random.nextDouble() * size);
+            if (better(individual, best)) best = individual;
+        }
+        return best;
+    }
+
+    /**
+     * Make member 'c' the one point crossover of members 'p1' and 'p2' of 'parents':
+     * the genes of 'p1' up to a random point and those of 'p2' from there on.
+     */
+    public void onePointCrossover(Population parents, int p1, int p2, int c, Random random) {
+        int crossoverPoint = (int) (random.nextDouble() * numGenes);
+        int row = c * numGenes;
+        System.arraycopy(parents.genes, p1 * numGenes, genes, row, crossoverPoint);
+        System.arraycopy(parents.genes, p2 * numGenes + crossoverPoint, genes, row + crossoverPoint, numGenes - crossoverPoint);
+        clearScores(c, c + 1);
+    }
+
+    /**
+     * Give each gene of member 'c' a new random value with a chance of 'probability'.
+     */
+    public void mutateReal(int c, float probability, Random random) {
+        int end = (c + 1) * numGenes;
+        for (int g = c * numGenes; g < end; g++) {
+            if (random.nextDouble() < probability) {
+                genes[g] = random.nextFloat();
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example;
+
+/**
+ * Keeps a running mean and variance of a stream of values using Welford's
+ * method, so the values themselves never need to be stored.
+ */
+public class RunningStatistics {
+
+    private int count = 0;
+    private double mean = 0;
+    private double m2 = 0;    // Sum of squared differences from the mean
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return The sample variance, or 0 until we have two values
+     */
+    public double getVariance() {
+        if (count < 2) return 0;
+        return m2 / (count - 1);
+    }
+
+    public double getStandardError() {
+        if (count == 0) return 0;
+        return Math.sqrt(getVariance() / count);
+    }
+}
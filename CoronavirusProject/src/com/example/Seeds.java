@@ -0,0 +1,43 @@
+package com.example;
+
+/**
+ * Seeds hands out the NetLogo random seed for each replicate of the model.
+ * Every seed is derived from a single master seed, the generation and the
+ * replicate number, so replicate i of every chromosome in a generation runs
+ * on the same random numbers (common random numbers). Differences in fitness
+ * within a generation then come from the policies rather than from luck, and
+ * a whole run can be repeated exactly from its master seed.
+ */
+public class Seeds {
+
+    private final long master;
+
+    public Seeds(long master) {
+        this.master = master;
+    }
+
+    public long getMaster() {
+        return master;
+    }
+
+    /**
+     * @param generation The generation being scored
+     * @param replicate  Which replicate of the evaluation this is, starting at 0
+     * @return The seed to give NetLogo's random-seed, which only takes 32 bit values
+     */
+    public int replicateSeed(int generation, int replicate) {
+        long g = mix(master + 0x9E3779B97F4A7C15L * (generation + 1));
+        return (int) mix(g + 0x9E3779B97F4A7C15L * (replicate + 1));
+    }
+
+    // The SplitMix64 finaliser, which scrambles nearby inputs into unrelated outputs
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public String toString() {
+        return "Master seed " + master;
+    }
+}
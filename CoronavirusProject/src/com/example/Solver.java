@@ -4,6 +4,12 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -15,52 +21,379 @@ public class Solver {
     //H:\4th Year\CSCU9Z7
     //C:\Users\luriy\Documents\University\4th Year\Spring\CSCU9Z7\
     public static final String projectPath = "[File Location]"; // Needs to be changed to suit system or location
+    public static final int CACHE_SIZE = 10000;
+    public static final int LOOPS = 10; // replicates of the model averaged for each evaluation
+    public static final String CHECKPOINT_FILE = projectPath + "checkpoint.bin"; // where GA runs are saved between generations
     ModelSimulation ms = null;
+    WorkspacePool pool = null;              // Only used when scoring in parallel
+    Evaluator evaluator = null;             // Scores whole populations, on a local pool or remote workers
     File f;
     // The following is used to keep a track of how many times we call the
     // objective function. It is normally proportional to the amount of work
     // involved in finding a solution to a problem
-    private int evaluations = 0;
+    private final AtomicInteger evaluations = new AtomicInteger();
+    // Results for the configurations we have already simulated, and the seeds they ran with
+    private final FitnessCache<EvaluationKey> cache = new FitnessCache<>(CACHE_SIZE);
+    // Where the time goes, along with how many runs of the model we have done
+    private final Metrics metrics = new Metrics();
+    // When set, replicates are raced against 'selectionThreshold' rather than always running LOOPS of them
+    private AdaptiveReplication racing = null;
+    private volatile float selectionThreshold = Float.NaN;
+    // When early abort is on, a replicate that is bound to score worse than 'abortCutoff' is abandoned
+    private boolean earlyAbort = false;
+    private volatile float abortCutoff = Float.POSITIVE_INFINITY;
+    // With common random numbers, replicate i of every chromosome in a generation shares a seed
+    private Seeds seeds = null;
+    private volatile int seedGeneration = 0;
+    // Where sweep results are recorded, or null to just print them
+    private SweepSink sweep = null;
+    // Where every replicate's daily series are kept, or null to throw them away
+    private TrajectoryStore trajectories = null;
 
     public Solver(String folder, String model) {
-        ms = new ModelSimulation(folder, model);
+        this(folder, model, 1);
     }
 
-    public static void main(String[] args) throws FileNotFoundException {
-        Solver s = new Solver(projectPath, "covid-model.nlogo");
+    // A solver with no workspaces of its own, for a Coordinator to score with
+    private Solver() {
+    }
+
+    /**
+     * A solver that scores populations on EvaluationWorker processes instead of
+     * in this JVM. Start workers with EvaluationWorker, pointing them at this
+     * machine and 'port'.
+     *
+     * @param port      The port workers connect to
+     * @param batchSize The most jobs to send a worker at once
+     */
+    public static Solver distributed(int port, int batchSize) throws IOException {
+        Solver s = new Solver();
+        s.evaluator = new Coordinator(s, port, batchSize);
+        return s;
+    }
+
+    /**
+     * @param folder        The folder containing the model
+     * @param model         The name of the model file
+     * @param workspaces    How many workspaces to score chromosomes with at once
+     */
+    public Solver(String folder, String model, int workspaces) {
+        if (workspaces <= 1) {
+            ms = new ModelSimulation(folder, model);
+            ms.setMetrics(metrics);
+        } else {
+            pool = new WorkspacePool(folder, model, workspaces);
+            pool.setMetrics(metrics);
+            evaluator = new ParallelEvaluator(this, workspaces);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Solver s = new Solver(projectPath, "covid-model.nlogo", Runtime.getRuntime().availableProcessors());
+//        Solver s = Solver.distributed(EvaluationProtocol.DEFAULT_PORT, 8); // Or score on EvaluationWorker processes
+//        s.setAdaptiveReplication(new AdaptiveReplication(3, 20, 0.95));
+//        s.setEarlyAbort(true);
+//        s.setCommonRandomNumbers(System.currentTimeMillis()); // Compare chromosomes on the same random numbers
+//        s.setTrajectoryStore(projectPath + "trajectories.bin"); // Keep every replicate, and start with the results of earlier runs
 //        s.parameterSweep(6);
+//        s.parameterSweep(12, DesignGenerator.Kind.LATIN_HYPERCUBE, 20000);
+//        s.parameterSweep(12, DesignGenerator.Kind.SOBOL, 20000, projectPath + "sweep.bin", true);
         //System.out.format("Time elapsed for run: %f%n", ((System.nanoTime() - startTime) / 1000000000));
         //float startTime = System.nanoTime();
         s.optimiseNetLogoModel(12); // Optimise a NetLogo model with 12 parameters
+//        s.resumeNetLogoModel(CHECKPOINT_FILE); // Or pick up a run that was cut short
+//        s.optimiseWithIslands(12); // Or evolve an island on each workspace
+//        s.optimiseSteadyState(12); // Or breed and replace one child at a time
+//        s.optimiseParetoFront(12); // Or find the trade-off between the two costs
         //System.out.format("Time elapsed for run: %f%n", ((System.nanoTime() - startTime) / 1000000000));
+        s.close();
+    }
+
+    /**
+     * Race replicates against the selection threshold instead of always running LOOPS of them.
+     *
+     * @param racing The racing settings, or null to go back to a fixed number of replicates
+     */
+    public void setAdaptiveReplication(AdaptiveReplication racing) {
+        this.racing = racing;
+    }
+
+    /**
+     * Set the fitness a candidate has to beat to do well in selection. When racing,
+     * candidates that are clearly worse than this are stopped early.
+     *
+     * @param threshold The threshold, or NaN if there isn't one yet
+     */
+    public void setSelectionThreshold(float threshold) {
+        selectionThreshold = threshold;
+    }
+
+    /**
+     * Abandon a run of the model as soon as it is bound to score worse than the abort cutoff.
+     */
+    public void setEarlyAbort(boolean earlyAbort) {
+        this.earlyAbort = earlyAbort;
+    }
+
+    /**
+     * Set the worst fitness that could still survive selection. With early abort on,
+     * evaluations that can't beat it are abandoned and flagged as aborted.
+     *
+     * @param cutoff The cutoff, or infinity to always finish
+     */
+    public void setAbortCutoff(float cutoff) {
+        abortCutoff = cutoff;
+    }
+
+    /**
+     * Give replicate i of every chromosome in a generation the same NetLogo seed, all
+     * derived from 'masterSeed', and seed the GA from it too so the run can be repeated.
+     * Cached results are then only reused within the generation whose seeds they ran with.
+     *
+     * @param masterSeed The seed everything else is derived from
+     */
+    public void setCommonRandomNumbers(long masterSeed) {
+        seeds = new Seeds(masterSeed);
+    }
+
+    /**
+     * Tell the solver which generation it is scoring, so it can pick that generation's seeds.
+     */
+    public void setSeedGeneration(int generation) {
+        seedGeneration = generation;
+    }
+
+    /**
+     * Keep the daily series of every evaluation we run in the store at 'filepath', and
+     * fill the cache with every evaluation it already holds that we could have run
+     * ourselves: LOOPS replicates or more, on the seeds we would have used, so call
+     * this after setCommonRandomNumbers. They are scored with our workspaces' cost
+     * model. Workers in other processes don't add to the store.
+     *
+     * @param filepath The store's file, created if it doesn't exist
+     */
+    public void setTrajectoryStore(String filepath) throws IOException {
+        trajectories = TrajectoryStore.open(filepath);
+        if (ms != null) ms.setTrajectoryStore(trajectories);
+        if (pool != null) pool.setTrajectoryStore(trajectories);
+
+        long start = System.nanoTime();
+        int warmed;
+        if (ms != null) {
+            warmed = trajectories.warm(cache, LOOPS, seeds, ms.getCostModel(), CostPolicy.INITIAL_COMPLIANCES);
+        } else if (pool != null) {
+            // Borrow a workspace so nothing else prepares its cost model while we use it
+            ModelSimulation sim;
+            try {
+                sim = pool.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a workspace", e);
+            }
+            try {
+                warmed = trajectories.warm(cache, LOOPS, seeds, sim.getCostModel(), CostPolicy.INITIAL_COMPLIANCES);
+            } finally {
+                pool.release(sim);
+            }
+        } else {
+            // The workers score with the usual model
+            warmed = trajectories.warm(cache, LOOPS, seeds, ModelSimulation.defaultCostModel(), CostPolicy.INITIAL_COMPLIANCES);
+        }
+        System.out.println(String.format("Warmed the cache with %d evaluations in %.1f ms", warmed, (System.nanoTime() - start) / 1e6));
+    }
+
+    // Seed the GA from the master seed, if we have one
+    private GA newGA() {
+        GA ga = new GA();
+        if (seeds != null) {
+            ga.setRandom(new Random(seeds.getMaster()));
+            System.out.println(seeds);
+        }
+        return ga;
+    }
+
+    // Shut down the evaluator threads and close any workspaces we opened
+    public void close() {
+        if (evaluator != null) evaluator.shutdown();
+        if (pool != null) pool.close();
+        if (ms != null) ms.dispose();
+        if (trajectories != null) {
+            try {
+                trajectories.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     @Test
     public void optimiseNetLogoModel(int numParameters) throws FileNotFoundException {
 
         // Now try to get the GA to guess the pattern
-        evaluations = 0;
-        GA ga = new GA();
+        evaluations.set(0);
+        GA ga = newGA();
+        ga.setCheckpoint(CHECKPOINT_FILE, 1);
+//        ga.setSurrogate(new Surrogate(5), 20); // Only simulate the most promising of 20 children per place
         // evolveNetLogo(Solver s, int parameters, int popsize, int generations, float mutationRate, int tournamentSize)
         Pattern solution = ga.evolveNetLogo(this, numParameters, 30, 20, 0.05f, 4);
-        System.out.println("GA Evaluations " + evaluations + "\n");
-        System.out.println(solution);
+        printResults(solution);
 
     }
 
+    /**
+     * Optimise the model with an island GA, one island for each workspace we have.
+     *
+     * @param numParameters The number of parameters in each chromosome
+     */
+    public void optimiseWithIslands(int numParameters) throws FileNotFoundException {
+
+        evaluations.set(0);
+        // The islands don't share a selection threshold or abort cutoff
+        setSelectionThreshold(Float.NaN);
+        setAbortCutoff(Float.POSITIVE_INFINITY);
+        // Each island keeps its workspace for the whole run
+        if (ms == null && pool == null)
+            throw new IllegalStateException("Each island needs a workspace of its own, so islands can't run on remote workers");
+        List<ModelSimulation> workspaces = new ArrayList<>();
+        try {
+            if (pool == null) workspaces.add(ms);
+            else for (int i = 0; i < pool.size(); i++) workspaces.add(pool.acquire());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a workspace", e);
+        }
+
+        try {
+            // IslandGA(Solver s, List<ModelSimulation> workspaces, int migrationInterval, int migrants, Random random)
+            IslandGA islands = new IslandGA(this, workspaces, 4, 2, seeds == null ? new Random() : new Random(seeds.getMaster()));
+            Pattern solution = islands.evolveNetLogo(numParameters, 30, 20, 0.05f, 4);
+            printResults(solution);
+        } finally {
+            if (pool != null) for (ModelSimulation sim : workspaces) pool.release(sim);
+        }
+
+    }
+
+    /**
+     * Optimise the model with a steady state GA that keeps every workspace busy.
+     *
+     * @param numParameters The number of parameters in each chromosome
+     */
+    public void optimiseSteadyState(int numParameters) throws FileNotFoundException {
+
+        evaluations.set(0);
+        int workers = evaluator == null ? 1 : evaluator.getCapacity();
+        SteadyStateGA ga = new SteadyStateGA(this, newGA(), workers);
+        // The same number of children as 20 generations of 30
+        Pattern solution = ga.evolveNetLogo(numParameters, 30, 30 * 20, 0.05f, 4);
+        printResults(solution);
+
+    }
+
+    /**
+     * Find the trade-off between infection cost and method cost with NSGA-II
+     * and print every policy on the Pareto front.
+     *
+     * @param numParameters The number of parameters in each chromosome
+     */
+    public void optimiseParetoFront(int numParameters) throws FileNotFoundException {
+
+        evaluations.set(0);
+        GA ga = newGA();
+        // NSGA2(Solver s, GA ga, boolean deaths)
+        Chromosome[] front = new NSGA2(this, ga, false).evolveNetLogo(numParameters, 30, 20, 0.05f);
+        System.out.println("Pareto front\niCost\tmCost\tdeaths\tpolicy");
+        for (Chromosome c : front)
+            System.out.println(String.format("%.5f\t%.5f\t%.5f\t%s", c.getICost(), c.getMCost(), c.getTotalDeaths(), ga.format(c)));
+        System.out.println("GA Evaluations " + evaluations + ", replicates " + metrics.getCount(Metrics.REPLICATES) + "\n");
+        System.out.println(cache);
+
+    }
+
+    /**
+     * Carry on an optimiseNetLogoModel run from the last checkpoint it saved. The run
+     * goes on with the common random numbers it was started with, or without them if
+     * it had none, whatever this solver was set up with.
+     *
+     * @param checkpointFile The checkpoint the run saved
+     */
+    public void resumeNetLogoModel(String checkpointFile) throws IOException {
+
+        evaluations.set(0);
+        Checkpoint cp = Checkpoint.read(checkpointFile);
+        // The cached results are only good for the seeds they ran on, so carry on with those
+        if (cp.getSeeds() == null) seeds = null;
+        else setCommonRandomNumbers(cp.getSeeds().getMaster());
+        GA ga = newGA();
+        ga.setCheckpoint(checkpointFile, 1);
+        // Use the same settings as optimiseNetLogoModel
+        Pattern solution = ga.resumeNetLogo(this, cp, 20, 0.05f, 4);
+        printResults(solution);
+
+    }
+
+    private void printResults(Pattern solution) {
+        if (seeds != null) System.out.println(seeds);
+        System.out.println("GA Evaluations " + evaluations + ", replicates " + metrics.getCount(Metrics.REPLICATES) + "\n");
+        System.out.println(cache);
+        System.out.println(metrics.summaryLine());
+        System.out.println(solution);
+        metrics.writeJson(projectPath + "metrics.json");
+    }
+
     @Test
     public void parameterSweep(int numParameters) throws FileNotFoundException {
 
         // Now try to get the GA to guess the pattern
-        evaluations = 0;
-        GA ga = new GA();
-        // evolveNetLogo(Solver s, int parameters, int popsize, int generations, float mutationRate, int tournamentSize)
+        evaluations.set(0);
+        GA ga = newGA();
+        // parameterSweep(Solver s, int parameters, int popsize)
         Pattern solution = ga.parameterSweep(this, numParameters, 64);
         System.out.println("GA Evaluations " + evaluations + "\n");
         System.out.println(solution);
 
     }
 
+    /**
+     * Sweep the parameters with a space-filling design, e.g. for sensitivity analysis.
+     *
+     * @param numParameters The number of parameters in each chromosome
+     * @param kind          Latin hypercube or Sobol
+     * @param points        How many points the design has
+     */
+    public void parameterSweep(int numParameters, DesignGenerator.Kind kind, int points) throws FileNotFoundException {
+
+        evaluations.set(0);
+        GA ga = newGA();
+        Pattern solution = ga.parameterSweep(this, new DesignGenerator(kind, points, numParameters, ga.getRandom()));
+        System.out.println("GA Evaluations " + evaluations + "\n");
+        System.out.println(cache);
+        System.out.println(solution);
+
+    }
+
+    /**
+     * As parameterSweep, but record every result to 'sweepFile' (see SweepSink) instead
+     * of printing it. If the file already holds results from a sweep that was cut short,
+     * those points are skipped. Use setCommonRandomNumbers with the same master seed to
+     * get the same design again.
+     *
+     * @param numParameters The number of parameters in each chromosome
+     * @param kind          Latin hypercube or Sobol
+     * @param points        How many points the design has
+     * @param sweepFile     Where to record the results
+     * @param daily         True to record the daily average of every series too
+     */
+    public void parameterSweep(int numParameters, DesignGenerator.Kind kind, int points, String sweepFile, boolean daily) throws IOException {
+        sweep = new SweepSink(sweepFile, GA.SWEEP_BATCH, daily);
+        try {
+            parameterSweep(numParameters, kind, points);
+        } finally {
+            sweep.close();
+            sweep = null;
+        }
+    }
+
     // We score our solutions via the following method so that we can keep
     // a count of how often they are called using the 'evaluations' counter.
     // This gives a reasonable approximation of the amount of work involved.
@@ -86,57 +419,168 @@ public class Solver {
         return 1;
     }
 
+    /**
+     * Score every chromosome in 'pop', in parallel if we have a pool of workspaces.
+     *
+     * @param pop The chromosomes to score
+     */
+    public void scorePopulation(Chromosome[] pop) throws FileNotFoundException {
+        if (evaluator != null) {
+            evaluator.scoreAll(pop);
+        } else {
+            for (Chromosome c : pop)
+                scoreNetLogoSolution(c);
+        }
+    }
+
     /**
      * @param c A chromosome
      * @return The overall score
      */
     public float scoreNetLogoSolution(Chromosome c) throws FileNotFoundException {
+        PolicyParameters parameters = PolicyParameters.fromChromosome(c);
+        if (scoreFromCache(c, parameters)) return c.getFitness();
+        if (ms != null) return simulate(c, parameters, ms);
+        if (pool == null) {
+            // Nothing to run it on here, so hand it to the workers
+            evaluator.scoreAll(new Chromosome[]{c});
+            return c.getFitness();
+        }
 
-        // Get the various parameter values from the chromosome
-        // and use them to set various NetLogo model properties.
-        float useMasks = roundValue(c.getGene(0));
-        float useLockdown = roundValue(c.getGene(1));
-        float useShielding = roundValue(c.getGene(2));
-        float useSelfIsolation = roundValue(c.getGene(3));
-        float useTestTrace = roundValue(c.getGene(4));
-        float useSocialDistancing = roundValue(c.getGene(5));
-
-		float maskThreshold = c.getGene(6) * 100.0f;
-		float lockdownThreshold = c.getGene(7) * 100.0f;
-		float shieldingThreshold = c.getGene(8) * 100.0f;
-		float isolationThreshold = c.getGene(9) * 100.0f;
-		float testTraceThreshold = c.getGene(10) * 100.0f;
-		float sdThreshold = c.getGene(11) * 100.0f;
-
-//		useMasks = 1;
-//		useLockdown = 1;
-//		useShielding = 1;
-//		useSelfIsolation = 1;
-//		useTestTrace = 1;
-//		useSocialDistancing = 1;
+        // Borrow a workspace for the length of this evaluation
+        ModelSimulation sim;
+        try {
+            sim = pool.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a workspace", e);
+        }
+        try {
+            return simulate(c, parameters, sim);
+        } finally {
+            pool.release(sim);
+        }
+    }
 
-        ms.setInitialConditions();
+    /**
+     * @param c  A chromosome
+     * @param ms The simulation to score it with
+     * @return The overall score
+     */
+    public float scoreNetLogoSolution(Chromosome c, ModelSimulation ms) throws FileNotFoundException {
+        PolicyParameters parameters = PolicyParameters.fromChromosome(c);
+        if (scoreFromCache(c, parameters)) return c.getFitness();
+        return simulate(c, parameters, ms);
+    }
 
-        ms.setParameter("ppe?", getBooleanString(useMasks));
-        ms.setParameter("lockdown?", getBooleanString(useLockdown));
-        ms.setParameter("shielding?", getBooleanString(useShielding));
-        ms.setParameter("social-distancing?", getBooleanString(useSocialDistancing));
-        ms.setParameter("test-and-trace?", getBooleanString(useTestTrace));
-        ms.setParameter("self-isolation?", getBooleanString(useSelfIsolation));
+    // Many chromosomes decode to the same configuration, so reuse the result if we have already
+    // simulated it, on the current generation's seeds if we are using common random numbers
+    boolean scoreFromCache(Chromosome c, PolicyParameters parameters) {
+        Evaluation cached = cache.get(cacheKey(parameters, seedGeneration));
+        if (cached == null) return false;
+        cached.applyTo(c);
+        metrics.increment(Metrics.CACHE_HITS);
+        // The sweep may not have this point yet, e.g. when the cache was warmed from a trajectory
+        // store, and it only records what it hasn't already. There are no daily averages to go with it
+        if (sweep != null) record(c, null);
+        return true;
+    }
 
-		ms.setParameter("protection-threshold", getValueString(maskThreshold));
-		ms.setParameter("lockdown-threshold", getValueString(lockdownThreshold));
-		ms.setParameter("shielding-threshold", getValueString(shieldingThreshold));
-		ms.setParameter("isolation-threshold", getValueString(isolationThreshold));
-		ms.setParameter("test-and-trace-threshold", getValueString(testTraceThreshold));
-		ms.setParameter("social-distancing-threshold", getValueString(sdThreshold));
+    private float simulate(Chromosome c, PolicyParameters parameters, ModelSimulation ms) throws FileNotFoundException {
 
-        f = new File(projectPath + "testLog.txt");
-        double results = ms.simulate(1, 10, projectPath + "model_data.txt", c);
+        // Use the parameter values decoded from the chromosome
+        // to set various NetLogo model properties.
+        long start = metrics.start();
+        int generation = seedGeneration;    // It may move on while we run
+        ms.setSeeds(seeds, generation);
+        ms.setInitialConditions();
+        parameters.applyTo(ms);
+        ms.setTrajectoryKey(parameters);
+        metrics.record(Metrics.PARAMETER_SETUP, start);
+
+        double cutoff = earlyAbort ? abortCutoff : Double.POSITIVE_INFINITY;
+        double results;
+        if (racing != null) results = racing.evaluate(ms, c, selectionThreshold, cutoff);
+        else if (earlyAbort) results = ms.evaluate(LOOPS, c, cutoff);
+        else results = ms.evaluate(LOOPS, c, Double.POSITIVE_INFINITY);
 
         float score = (float) results;
         c.setFitness(score);
-        evaluations++;
+        finish(c, cacheKey(parameters, generation), ms.getLoopsRun(), ms.getDailyStatistics());
         return score;
     }
+
+    /**
+     * Describe how a configuration should be scored, for a worker in another process.
+     *
+     * @param id         The job's number
+     * @param parameters The configuration to score
+     */
+    EvaluationProtocol.Job newJob(long id, PolicyParameters parameters) {
+        double cutoff = earlyAbort ? abortCutoff : Double.POSITIVE_INFINITY;
+        return new EvaluationProtocol.Job(id, parameters, seeds, seedGeneration, LOOPS, cutoff, racing, selectionThreshold);
+    }
+
+    /**
+     * Take in a chromosome a worker has scored, as if we had simulated it here.
+     *
+     * @param c          The scored chromosome
+     * @param parameters The configuration it decodes to
+     * @param replicates How many runs of the model the worker did
+     */
+    void accept(Chromosome c, PolicyParameters parameters, int generation, int replicates) {
+        metrics.add(Metrics.REPLICATES, replicates);
+        finish(c, cacheKey(parameters, generation), replicates, null);
+    }
+
+    // What a result for 'parameters' run on the seeds of 'generation' is cached under
+    private EvaluationKey cacheKey(PolicyParameters parameters, int generation) {
+        return new EvaluationKey(parameters, seeds == null ? EvaluationKey.UNSEEDED : generation);
+    }
+
+    // How many replicates a result needs before it can stand in for any later evaluation
+    private int fullReplicates() {
+        return racing == null ? LOOPS : racing.getStandardReplicates();
+    }
+
+    // Cache and record a freshly scored chromosome, which took 'replicates' runs of the model
+    private void finish(Chromosome c, EvaluationKey key, int replicates, DailyStatistics daily) {
+        // An aborted score is only a bound for this cutoff, so don't let it stand in for a real one.
+        // Nor a race that was stopped early: its few replicates were only enough to show it lost
+        // against this threshold, and the next generation may race it against another
+        if (!c.isAborted() && replicates >= fullReplicates()) {
+            cache.put(key, Evaluation.of(c));
+            if (sweep != null) record(c, daily);
+        }
+        evaluations.incrementAndGet();
+        metrics.increment(Metrics.EVALUATIONS);
+    }
+
+    // Add a scored chromosome to the sweep along with its daily averages, if we have them
+    private void record(Chromosome c, DailyStatistics daily) {
+        try {
+            sweep.add(c, daily);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not record sweep result", e);
+        }
+    }
+
+    public SweepSink getSweepSink() {
+        return sweep;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public FitnessCache<EvaluationKey> getCache() {
+        return cache;
+    }
+
+    /**
+     * @return The seeds of the common random numbers, or null if replicates aren't seeded
+     */
+    public Seeds getSeeds() {
+        return seeds;
+    }
 }
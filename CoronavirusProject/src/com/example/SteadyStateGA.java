@@ -0,0 +1,136 @@
+package com.example;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SteadyStateGA evolves a single population without generations. Each worker
+ * breeds a child from the current population, scores it, and puts it back
+ * straight away in place of the loser of an inverse tournament, then breeds
+ * the next one. A slow simulation only holds up its own worker, so every
+ * workspace stays busy however much the run times vary.
+ *
+ * The population is only locked while breeding and inserting, never while a
+ * child is being scored.
+ */
+public class SteadyStateGA {
+
+    private final Solver s;
+    private final GA ga;            // Supplies the operators and the random number generator
+    private final int workers;      // How many children are scored at once
+
+    /**
+     * @param s       The solver to score chromosomes with
+     * @param ga      The GA whose operators we use
+     * @param workers How many children to score at once, normally one per workspace
+     */
+    public SteadyStateGA(Solver s, GA ga, int workers) {
+        this.s = s;
+        this.ga = ga;
+        this.workers = workers;
+    }
+
+    /**
+     * Evolve a population until 'evaluations' children have been scored.
+     *
+     * @param parameters     The number of genes in each chromosome
+     * @param popsize        The size of the population
+     * @param evaluations    How many children to breed and score
+     * @param mutationRate   The mutation rate
+     * @param tournamentSize How many solutions to include in each tournament
+     * @return The best solution found
+     */
+    public Pattern evolveNetLogo(int parameters, int popsize, int evaluations, float mutationRate, int tournamentSize) throws FileNotFoundException {
+        Chromosome[] pop = new Chromosome[popsize];
+        for (int p = 0; p < popsize; p++)
+            pop[p] = new Chromosome(parameters, 1, ga.getRandom());
+
+        // Score our population, there is nothing to race against yet
+        s.setSelectionThreshold(Float.NaN);
+        s.setAbortCutoff(Float.POSITIVE_INFINITY);
+        s.scorePopulation(pop);
+        updateThresholds(pop);
+
+        AtomicInteger bred = new AtomicInteger();    // Children handed out to workers so far
+        AtomicInteger done = new AtomicInteger();    // Children scored and considered for the population
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "steady-state");
+            t.setDaemon(true); // Don't keep the JVM alive once the GA has finished
+            return t;
+        });
+        try {
+            List<Future<Void>> running = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                running.add(executor.submit(() -> {
+                    while (bred.getAndIncrement() < evaluations) {
+                        Chromosome child = breed(pop, mutationRate, tournamentSize);
+                        s.scoreNetLogoSolution(child);
+                        insert(pop, child, tournamentSize, done.incrementAndGet());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : running) join(worker);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Chromosome best = ga.getRefBest(pop);
+        System.out.println("Best\n" + best + " Score " + best.getFitness());
+        return best.getPattern();
+    }
+
+    // Breed one child from the current population
+    private Chromosome breed(Chromosome[] pop, float mutationRate, int tournamentSize) {
+        long start = s.getMetrics().start();
+        Chromosome child;
+        synchronized (pop) {
+            Chromosome p1 = ga.tournamentSelect(pop, tournamentSize);
+            Chromosome p2 = ga.tournamentSelect(pop, tournamentSize);
+            child = ga.onePointCrossover(p1, p2);
+            child.mutateReal(mutationRate, ga.getRandom());
+        }
+        s.getMetrics().record(Metrics.GA_OPERATORS, start);
+        return child;
+    }
+
+    // Put a scored child in place of an inverse tournament loser, provided it is no worse
+    private void insert(Chromosome[] pop, Chromosome child, int tournamentSize, int count) {
+        synchronized (pop) {
+            int loser = ga.inverseTournamentSelect(pop, tournamentSize);
+            if (!child.isAborted() && child.getFitness() <= pop[loser].getFitness()) pop[loser] = child;
+            updateThresholds(pop);
+
+            // Print out the best every time we have scored another population's worth
+            if (count % pop.length == 0) {
+                System.out.println(ga.describe(count / pop.length - 1, ga.getRefBest(pop)));
+                System.out.println(s.getMetrics().summaryLine());
+            }
+        }
+    }
+
+    // A child worse than our worst can never get in, so it is safe to abandon it
+    private void updateThresholds(Chromosome[] pop) {
+        s.setSelectionThreshold(ga.getMedianFitness(pop));
+        s.setAbortCutoff(pop[ga.getIndexWorst(pop)].getFitness());
+    }
+
+    private static void join(Future<Void> worker) throws FileNotFoundException {
+        try {
+            worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evolving", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FileNotFoundException) throw (FileNotFoundException) e.getCause();
+            throw new IllegalStateException("Worker failed", e.getCause());
+        }
+    }
+}
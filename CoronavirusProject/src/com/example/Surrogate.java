@@ -0,0 +1,182 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Surrogate is a cheap stand-in for the simulation. It remembers the fitness of
+ * every configuration we have simulated and predicts the fitness of a new one
+ * from its k nearest neighbours, weighting closer neighbours more heavily.
+ * Along with the prediction it gives an uncertainty, which grows with the
+ * spread of the neighbours' fitness and with how far away they are, so that
+ * the GA can rank candidate children by their expected improvement and only
+ * simulate the most promising.
+ *
+ * Every configuration it learns is predicted first, which gives a running
+ * measure of how accurate the surrogate is on configurations it hasn't seen.
+ * The methods are synchronized so islands or workers can share one surrogate.
+ */
+public class Surrogate {
+
+    private final int k;                                        // How many neighbours to use
+    private final List<double[]> points = new ArrayList<>();    // Decoded configurations we have simulated
+    private final List<Double> fitness = new ArrayList<>();     // Their fitness, in the same order
+    private final Set<PolicyParameters> seen = new HashSet<>();
+    private final RunningStatistics all = new RunningStatistics();      // Fitness of everything learned
+    private final RunningStatistics errors = new RunningStatistics();   // Prediction error before learning
+    private double squaredError = 0;
+
+    /**
+     * @param k How many neighbours each prediction uses
+     */
+    public Surrogate(int k) {
+        this.k = k;
+    }
+
+    /**
+     * Turn a configuration into a point with every coordinate between 0 and 1.
+     */
+    public static double[] features(PolicyParameters p) {
+        double[] x = new double[PolicyParameters.NUM_PARAMETERS];
+        for (int i = 0; i < PolicyParameters.SWITCHES.length; i++)
+            x[i] = p.getSwitch(i) ? 1 : 0;
+        for (int i = 0; i < PolicyParameters.THRESHOLDS.length; i++)
+            x[PolicyParameters.SWITCHES.length + i] = p.getThreshold(i) / 100.0;
+        return x;
+    }
+
+    /**
+     * Learn the fitness of a chromosome that has just been simulated. Chromosomes
+     * whose evaluation was aborted only have a bound on their fitness, so they are ignored.
+     */
+    public synchronized void learn(Chromosome c) {
+        if (c.isAborted()) return;
+        PolicyParameters p = PolicyParameters.fromChromosome(c);
+        if (!seen.add(p)) return;
+
+        double[] x = features(p);
+        if (points.size() >= k) {
+            double error = predict(x)[0] - c.getFitness();
+            errors.add(Math.abs(error));
+            squaredError += error * error;
+        }
+        points.add(x);
+        fitness.add((double) c.getFitness());
+        all.add(c.getFitness());
+    }
+
+    /**
+     * @return True once there are enough points to make a prediction
+     */
+    public synchronized boolean isReady() {
+        return points.size() >= k;
+    }
+
+    /**
+     * Predict the fitness of configuration 'x'.
+     *
+     * @return The predicted fitness and its standard deviation
+     */
+    public synchronized double[] predict(double[] x) {
+        // Find the k nearest points, kept sorted by distance
+        int n = Math.min(k, points.size());
+        int[] nearest = new int[n];
+        double[] dist = new double[n];
+        int found = 0;
+        for (int i = 0; i < points.size(); i++) {
+            double d = distance(x, points.get(i));
+            if (found < n) found++;
+            else if (d >= dist[n - 1]) continue;
+            int j = found - 1;
+            while (j > 0 && dist[j - 1] > d) {
+                dist[j] = dist[j - 1];
+                nearest[j] = nearest[j - 1];
+                j--;
+            }
+            dist[j] = d;
+            nearest[j] = i;
+        }
+
+        // A configuration we've already simulated needs no guessing
+        if (dist[0] == 0) return new double[]{fitness.get(nearest[0]), 0};
+
+        double weights = 0, mean = 0;
+        for (int j = 0; j < n; j++) {
+            double w = 1 / dist[j];
+            weights += w;
+            mean += w * fitness.get(nearest[j]);
+        }
+        mean /= weights;
+
+        double var = 0;
+        for (int j = 0; j < n; j++) {
+            double diff = fitness.get(nearest[j]) - mean;
+            var += diff * diff / dist[j];
+        }
+        var /= weights;
+
+        // Far from anything we know, the prediction is worth less
+        double remoteness = dist[0] / Math.sqrt(x.length);
+        double sd = Math.sqrt(var) + remoteness * Math.sqrt(all.getVariance());
+        return new double[]{mean, sd};
+    }
+
+    /**
+     * The expected improvement on 'best' from simulating configuration 'x'.
+     * Lower fitness is better.
+     */
+    public double expectedImprovement(double[] x, double best) {
+        double[] p = predict(x);
+        double mean = p[0];
+        double sd = p[1];
+        if (sd <= 0) return Math.max(best - mean, 0);
+        double z = (best - mean) / sd;
+        return (best - mean) * cdf(z) + sd * pdf(z);
+    }
+
+    /**
+     * @return The mean absolute error of predictions made before learning each point
+     */
+    public synchronized double getMeanAbsoluteError() {
+        return errors.getMean();
+    }
+
+    /**
+     * @return The share of the variance in fitness the predictions explain, 1 is perfect
+     */
+    public synchronized double getRSquared() {
+        if (errors.getCount() < 2 || all.getVariance() == 0) return 0;
+        return 1 - (squaredError / errors.getCount()) / all.getVariance();
+    }
+
+    public synchronized int size() {
+        return points.size();
+    }
+
+    private static double distance(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            double d = a[i] - b[i];
+            sum += d * d;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private static double pdf(double z) {
+        return Math.exp(-z * z / 2) / Math.sqrt(2 * Math.PI);
+    }
+
+    // Standard normal distribution function (Abramowitz and Stegun 26.2.17)
+    private static double cdf(double z) {
+        double t = 1 / (1 + 0.2316419 * Math.abs(z));
+        double poly = t * (0.319381530 + t * (-0.356563782 + t * (1.781477937 + t * (-1.821255978 + t * 1.330274429))));
+        double upper = pdf(z) * poly;
+        return z >= 0 ? 1 - upper : upper;
+    }
+
+    public synchronized String toString() {
+        return String.format("Surrogate %d points, mae %.5f, r2 %.3f", points.size(), getMeanAbsoluteError(), getRSquared());
+    }
+}
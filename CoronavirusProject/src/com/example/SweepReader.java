@@ -0,0 +1,172 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SweepReader gives random access to a sweep written by SweepSink without
+ * reading it into memory. Each complete chunk listed in the index is memory
+ * mapped on its own, so rows are read straight from the file as they are asked
+ * for. Rows are numbered across all chunks in the order they were recorded.
+ */
+public class SweepReader implements Closeable {
+
+    // The columns of each row's results
+    public static final int FITNESS = 0;
+    public static final int INFECTIONS = 1;
+    public static final int TOTAL_INFECTIONS = 2;
+    public static final int DEATHS = 3;
+    public static final int TOTAL_DEATHS = 4;
+    public static final int I_COST = 5;
+    public static final int M_COST = 6;
+
+    private final FileChannel data;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final List<Integer> firstRow = new ArrayList<>();  // The row number of each chunk's first row
+    private int rows = 0;
+    private long dataLength = 0;                                // Where the last complete chunk ends
+
+    /**
+     * @param filepath The data file given to SweepSink
+     */
+    public SweepReader(String filepath) throws IOException {
+        data = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ);
+        try (FileChannel index = FileChannel.open(Paths.get(SweepSink.indexPath(filepath)), StandardOpenOption.READ)) {
+            ByteBuffer idx = ByteBuffer.allocate((int) index.size());
+            while (idx.hasRemaining() && index.read(idx) >= 0) ;
+            idx.flip();
+            if (idx.remaining() < SweepSink.INDEX_HEADER || idx.getInt() != SweepSink.INDEX_MAGIC)
+                throw new IOException(filepath + " has no sweep index");
+            int version = idx.getInt();
+            if (version != SweepSink.VERSION) throw new IOException("Unsupported sweep version " + version);
+
+            while (idx.remaining() >= SweepSink.INDEX_ENTRY) {
+                long offset = idx.getLong();
+                int count = idx.getInt();
+                if (!mapChunk(offset, count)) break;
+            }
+        }
+    }
+
+    // Map the chunk at 'offset', returning false if it isn't all there
+    private boolean mapChunk(long offset, int count) throws IOException {
+        if (offset + 3 * Integer.BYTES > data.size()) return false;
+        ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES);
+        data.read(header, offset);
+        header.flip();
+        if (header.getInt() != SweepSink.MAGIC || header.getInt() != count) return false;
+        int days = header.getInt();
+
+        long size = chunkSize(count, days);
+        if (offset + size > data.size()) return false;
+        chunks.add(data.map(FileChannel.MapMode.READ_ONLY, offset, size));
+        firstRow.add(rows);
+        rows += count;
+        dataLength = offset + size;
+        return true;
+    }
+
+    static long chunkSize(int rows, int days) {
+        return 3L * Integer.BYTES + rows
+                + (long) PolicyParameters.THRESHOLDS.length * rows * Double.BYTES
+                + (long) SweepSink.RESULTS * rows * Float.BYTES
+                + (long) ModelSimulation.SERIES * days * rows * Float.BYTES;
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return How many bytes of the data file hold complete chunks
+     */
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    public PolicyParameters getParameters(int row) {
+        int c = chunkOf(row);
+        ByteBuffer chunk = chunks.get(c);
+        int r = row - firstRow.get(c);
+        int count = chunk.getInt(Integer.BYTES);
+
+        boolean[] switches = new boolean[PolicyParameters.SWITCHES.length];
+        int bits = chunk.get(3 * Integer.BYTES + r);
+        for (int i = 0; i < switches.length; i++) switches[i] = (bits & (1 << i)) != 0;
+
+        double[] thresholds = new double[PolicyParameters.THRESHOLDS.length];
+        int base = 3 * Integer.BYTES + count;
+        for (int i = 0; i < thresholds.length; i++)
+            thresholds[i] = chunk.getDouble(base + (i * count + r) * Double.BYTES);
+        return new PolicyParameters(switches, thresholds);
+    }
+
+    /**
+     * @param column One of FITNESS, INFECTIONS, ..., M_COST
+     * @param row    The row
+     */
+    public float getResult(int column, int row) {
+        int c = chunkOf(row);
+        ByteBuffer chunk = chunks.get(c);
+        int r = row - firstRow.get(c);
+        int count = chunk.getInt(Integer.BYTES);
+        int base = 3 * Integer.BYTES + count + PolicyParameters.THRESHOLDS.length * count * Double.BYTES;
+        return chunk.getFloat(base + (column * count + r) * Float.BYTES);
+    }
+
+    public float getFitness(int row) {
+        return getResult(FITNESS, row);
+    }
+
+    /**
+     * @return How many days of daily averages 'row' has, 0 if none were recorded
+     */
+    public int getDays(int row) {
+        return chunks.get(chunkOf(row)).getInt(2 * Integer.BYTES);
+    }
+
+    /**
+     * @param series One of the ModelSimulation series, e.g. ModelSimulation.INFECTED
+     * @param day    The day
+     * @param row    The row
+     * @return The average of 'series' on 'day' over the replicates of that row's evaluation
+     */
+    public float getDaily(int series, int day, int row) {
+        int c = chunkOf(row);
+        ByteBuffer chunk = chunks.get(c);
+        int r = row - firstRow.get(c);
+        int count = chunk.getInt(Integer.BYTES);
+        int days = chunk.getInt(2 * Integer.BYTES);
+        int base = 3 * Integer.BYTES + count + PolicyParameters.THRESHOLDS.length * count * Double.BYTES
+                + SweepSink.RESULTS * count * Float.BYTES;
+        return chunk.getFloat(base + ((series * days + day) * count + r) * Float.BYTES);
+    }
+
+    // Binary search for the chunk holding 'row'
+    private int chunkOf(int row) {
+        if (row < 0 || row >= rows) throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        int lo = 0, hi = chunks.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (firstRow.get(mid) <= row) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    public void close() throws IOException {
+        chunks.clear();
+        data.close();
+    }
+}
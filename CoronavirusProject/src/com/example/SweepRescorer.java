@@ -0,0 +1,106 @@
+package com.example;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SweepRescorer costs every point of a finished sweep under one or more cost
+ * models, using the daily averages the SweepSink recorded instead of running
+ * the model again. The sweep must have been recorded with its daily averages.
+ *
+ * The output has a row per point: its row number, the policy and the fitness
+ * it was recorded with, then the average daily cost, infection cost and
+ * method cost under each model in turn. The best point under each model is
+ * printed at the end.
+ */
+public class SweepRescorer {
+
+    private final List<CostModel> models;
+    private final double[] compliances;     // The compliance of each method, which the sweep doesn't record
+
+    /**
+     * @param models      The cost models to score each point with
+     * @param compliances The compliance of each method, indexed by CostKernel.PPE ... SHIELDING
+     */
+    public SweepRescorer(List<CostModel> models, double[] compliances) {
+        this.models = models;
+        this.compliances = compliances;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String sweepFile = args.length > 0 ? args[0] : Solver.projectPath + "sweep.bin";
+        String outFile = args.length > 1 ? args[1] : Solver.projectPath + "rescored.txt";
+        // The weightings ModelSimulation scores with
+        List<CostModel> models = Arrays.asList(new CostKernel(12.0, 1.0), new WorkAbsenceCostModel(12.0, 1.0));
+        new SweepRescorer(models, CostPolicy.INITIAL_COMPLIANCES).rescore(sweepFile, outFile);
+    }
+
+    /**
+     * @param sweepFile The sweep's data file
+     * @param outFile   Where to write the costs
+     * @return How many points were rescored
+     */
+    public int rescore(String sweepFile, String outFile) throws IOException {
+        long start = System.nanoTime();
+        int rescored = 0;
+        int skipped = 0;
+        double[] best = new double[models.size()];
+        int[] bestRow = new int[models.size()];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        Arrays.fill(bestRow, -1);
+
+        try (SweepReader reader = new SweepReader(sweepFile);
+             PrintWriter out = new PrintWriter(new FileWriter(outFile))) {
+            out.print("Row\tPolicy\tRecorded fitness");
+            for (CostModel model : models)
+                out.print("\t" + model.getName() + "\t" + model.getName() + " iCost\t" + model.getName() + " mCost");
+            out.println();
+
+            double[][] series = new double[ModelSimulation.SERIES][];
+            double[] dailyCost = new double[0];
+            for (int row = 0; row < reader.getRows(); row++) {
+                int days = reader.getDays(row);
+                if (days == 0) {
+                    skipped++;
+                    continue;
+                }
+                // Reuse the arrays for every row of the same length
+                if (dailyCost.length != days) {
+                    for (int s = 0; s < series.length; s++) series[s] = new double[days];
+                    dailyCost = new double[days];
+                }
+                for (int s = 0; s < series.length; s++)
+                    for (int d = 0; d < days; d++) series[s][d] = reader.getDaily(s, d, row);
+
+                PolicyParameters parameters = reader.getParameters(row);
+                CostPolicy policy = CostPolicy.of(parameters, compliances);
+                out.print(row + "\t" + parameters + "\t" + reader.getFitness(row));
+                for (int m = 0; m < models.size(); m++) {
+                    CostModel model = models.get(m);
+                    model.prepare(policy);
+                    double cost = model.dailyCosts(series, dailyCost) / days;
+                    out.print("\t" + cost + "\t" + model.getInfectionCost() / days + "\t" + model.getMethodCost() / days);
+                    if (cost < best[m]) {
+                        best[m] = cost;
+                        bestRow[m] = row;
+                    }
+                }
+                out.println();
+                rescored++;
+            }
+
+            System.out.println(String.format("Rescored %d points under %d cost models in %.1f ms", rescored,
+                    models.size(), (System.nanoTime() - start) / 1e6));
+            if (skipped > 0) System.out.println(skipped + " points have no daily averages and were skipped");
+            for (int m = 0; m < models.size(); m++) {
+                if (bestRow[m] < 0) continue;
+                System.out.println(String.format("Best under %s: row %d, cost %.5f, %s", models.get(m).getName(),
+                        bestRow[m], best[m], reader.getParameters(bestRow[m])));
+            }
+        }
+        return rescored;
+    }
+}
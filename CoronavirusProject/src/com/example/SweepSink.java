@@ -0,0 +1,193 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SweepSink records the result of every point in a parameter sweep to a
+ * binary file, rather than printing them. Results are gathered into chunks
+ * and each full chunk is written column by column: the switches of every row,
+ * then each threshold, then each result, then optionally the daily averages
+ * of every series. A small index file lists where each chunk starts and how
+ * many rows it holds, and is only updated once the chunk is safely on disk.
+ * SweepReader memory-maps the file for analysis.
+ *
+ * Reopening an existing sweep ignores anything after the last complete chunk and
+ * remembers which configurations are already recorded, so a sweep that was
+ * cut short can skip them and carry on.
+ *
+ * Chunk layout (big endian):
+ *   int MAGIC, int rows, int days (0 without daily averages)
+ *   byte[rows]                   switches, bit i set if switch i is on
+ *   double[THRESHOLDS][rows]     thresholds
+ *   float[RESULTS][rows]         fitness, infections, total infections, deaths, total deaths, iCost, mCost
+ *   float[SERIES][days][rows]    daily averages of each ModelSimulation series
+ *
+ * Index layout: int INDEX_MAGIC, int VERSION, then a long offset and an int row count per chunk.
+ */
+public class SweepSink {
+
+    static final int MAGIC = 0x53574350;        // "SWCP"
+    static final int INDEX_MAGIC = 0x53574958;  // "SWIX"
+    static final int VERSION = 1;
+    static final int RESULTS = 7;
+    static final int INDEX_ENTRY = Long.BYTES + Integer.BYTES;
+    static final int INDEX_HEADER = 2 * Integer.BYTES;
+
+    private final FileChannel data;
+    private final FileChannel index;
+    private final int chunkRows;                // Rows per chunk
+    private final boolean daily;                // Whether to record the daily averages
+    private final Set<PolicyParameters> recorded = new HashSet<>();
+    private long end = 0;                       // Where the next chunk goes in the data file
+
+    // The chunk being filled
+    private final PolicyParameters[] keys;
+    private final float[][] results;
+    private double[][][] days;                  // [row][series][day], allocated once we know the length
+    private int rows = 0;
+
+    /**
+     * Open the sweep at 'filepath' (plus 'filepath'.idx for its index), carrying
+     * on from whatever it already holds.
+     *
+     * @param filepath  The data file
+     * @param chunkRows How many rows to gather before writing a chunk
+     * @param daily     True to record the daily average of every series too
+     */
+    public SweepSink(String filepath, int chunkRows, boolean daily) throws IOException {
+        this.chunkRows = chunkRows;
+        this.daily = daily;
+        keys = new PolicyParameters[chunkRows];
+        results = new float[RESULTS][chunkRows];
+
+        data = FileChannel.open(Paths.get(filepath), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(Paths.get(indexPath(filepath)), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (index.size() < INDEX_HEADER) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER);
+            header.putInt(INDEX_MAGIC).putInt(VERSION).flip();
+            index.truncate(0);
+            index.write(header, 0);
+        } else {
+            recover(filepath);
+        }
+    }
+
+    static String indexPath(String filepath) {
+        return filepath + ".idx";
+    }
+
+    // Throw away any partly written chunk and note every configuration already recorded
+    private void recover(String filepath) throws IOException {
+        try (SweepReader reader = new SweepReader(filepath)) {
+            for (int r = 0; r < reader.getRows(); r++) recorded.add(reader.getParameters(r));
+            // New chunks overwrite anything after the last complete one. The data file
+            // may still be mapped, so it is left at its length rather than truncated
+            end = reader.getDataLength();
+            index.truncate(INDEX_HEADER + (long) reader.getChunkCount() * INDEX_ENTRY);
+        }
+        System.out.println("Sweep " + filepath + " already holds " + recorded.size() + " points");
+    }
+
+    /**
+     * @return True if 'p' has already been recorded, so needn't be simulated again
+     */
+    public synchronized boolean contains(PolicyParameters p) {
+        return recorded.contains(p);
+    }
+
+    /**
+     * Record a scored chromosome.
+     *
+     * @param c     The chromosome
+     * @param daily The daily averages of each series from its evaluation, or null if we aren't recording them
+     */
+    public synchronized void add(Chromosome c, DailyStatistics daily) throws IOException {
+        PolicyParameters p = PolicyParameters.fromChromosome(c);
+        if (!recorded.add(p)) return;
+
+        keys[rows] = p;
+        Evaluation e = Evaluation.of(c);
+        results[0][rows] = e.fitness;
+        results[1][rows] = e.infections;
+        results[2][rows] = e.totalInfections;
+        results[3][rows] = e.deaths;
+        results[4][rows] = e.totalDeaths;
+        results[5][rows] = e.iCost;
+        results[6][rows] = e.mCost;
+
+        if (this.daily && daily != null) {
+            if (days == null) {
+                days = new double[chunkRows][ModelSimulation.SERIES][daily.getMeans(0).length];
+                // Rows already in this chunk came without daily averages, so they have none rather than zeros
+                for (int r = 0; r < rows; r++)
+                    for (double[] series : days[r]) Arrays.fill(series, Double.NaN);
+            }
+            // The statistics belong to the workspace and will be reused, so take a copy
+            for (int series = 0; series < ModelSimulation.SERIES; series++)
+                System.arraycopy(daily.getMeans(series), 0, days[rows][series], 0, days[rows][series].length);
+        } else if (days != null) {
+            // Don't leave the last chunk's values in this row
+            for (double[] series : days[rows]) Arrays.fill(series, Double.NaN);
+        }
+
+        if (++rows == chunkRows) flush();
+    }
+
+    /**
+     * Write out the rows gathered so far as a chunk.
+     */
+    public synchronized void flush() throws IOException {
+        if (rows == 0) return;
+        int numDays = days == null ? 0 : days[0][0].length;
+        int switches = PolicyParameters.SWITCHES.length;
+        int thresholds = PolicyParameters.THRESHOLDS.length;
+
+        int size = 3 * Integer.BYTES + rows
+                + thresholds * rows * Double.BYTES
+                + RESULTS * rows * Float.BYTES
+                + ModelSimulation.SERIES * numDays * rows * Float.BYTES;
+        ByteBuffer chunk = ByteBuffer.allocate(size);
+        chunk.putInt(MAGIC).putInt(rows).putInt(numDays);
+
+        for (int r = 0; r < rows; r++) {
+            int bits = 0;
+            for (int i = 0; i < switches; i++) if (keys[r].getSwitch(i)) bits |= 1 << i;
+            chunk.put((byte) bits);
+        }
+        for (int i = 0; i < thresholds; i++)
+            for (int r = 0; r < rows; r++) chunk.putDouble(keys[r].getThreshold(i));
+        for (int i = 0; i < RESULTS; i++)
+            for (int r = 0; r < rows; r++) chunk.putFloat(results[i][r]);
+        for (int series = 0; series < ModelSimulation.SERIES; series++)
+            for (int d = 0; d < numDays; d++)
+                for (int r = 0; r < rows; r++) chunk.putFloat((float) days[r][series][d]);
+        chunk.flip();
+
+        // The chunk must be on disk before the index points at it
+        long offset = end;
+        while (chunk.hasRemaining()) data.write(chunk, offset + chunk.position());
+        data.force(false);
+        end = offset + size;
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+        entry.putLong(offset).putInt(rows).flip();
+        index.write(entry, index.size());
+        index.force(false);
+
+        rows = 0;
+    }
+
+    public void close() throws IOException {
+        flush();
+        data.close();
+        index.close();
+    }
+}
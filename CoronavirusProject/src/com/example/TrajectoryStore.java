@@ -0,0 +1,357 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TrajectoryStore keeps the daily series of every replicate of every finished
+ * evaluation, so they can be costed again, analysed or used to fill the
+ * fitness cache without running NetLogo. Every record is the same size, so
+ * record i is found by arithmetic, and the file is memory mapped a segment of
+ * records at a time. Each record is filed under the configuration it ran, the
+ * evaluation it belongs to, its place in that evaluation and the seed it ran
+ * with, and an index of the evaluations of each configuration is rebuilt when
+ * the store is opened.
+ *
+ * The replicates of an evaluation are only written once it has finished, all
+ * together, so an evaluation that was abandoned part way through never
+ * appears. They only count once the count in the header has been moved past
+ * the last of them, which happens after they are all written, so a store
+ * whose process died part way through loses the whole evaluation.
+ *
+ * Layout (big endian):
+ *   header:  int MAGIC, int VERSION, int series, int days, long count, padded to HEADER bytes
+ *   record:  byte switches (bit i set if switch i is on), byte flags (bit 0 set if seeded),
+ *            short replicate, int seed, long evaluation, int seed generation, int replicates,
+ *            double[THRESHOLDS] thresholds, float[series][days] values
+ */
+public class TrajectoryStore implements Closeable {
+
+    static final int MAGIC = 0x43565452;            // "CVTR"
+    static final int VERSION = 2;
+    static final int HEADER = 64;
+    static final int KEY = 24 + PolicyParameters.THRESHOLDS.length * Double.BYTES;
+    static final int SEGMENT_RECORDS = 1024;        // Records mapped at a time
+    private static final int COUNT_OFFSET = 4 * Integer.BYTES;
+
+    private final String filepath;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final int series;
+    private final int days;
+    private final int recordSize;
+    private final Map<PolicyParameters, List<StoredEvaluation>> index = new HashMap<>();    // Evaluations of each configuration
+    private int count;
+    private long nextEvaluation = 0;
+
+    // The records of one evaluation, which are always next to each other
+    private static class StoredEvaluation {
+        final long id;
+        final boolean seeded;
+        final int generation;
+        final int first;
+        final int replicates;
+
+        StoredEvaluation(long id, boolean seeded, int generation, int first, int replicates) {
+            this.id = id;
+            this.seeded = seeded;
+            this.generation = generation;
+            this.first = first;
+            this.replicates = replicates;
+        }
+    }
+
+    /**
+     * Open the store at 'filepath', creating it if it doesn't exist.
+     *
+     * @param filepath The store's file
+     * @param series   How many series each replicate has
+     * @param days     How many days each series has
+     */
+    public TrajectoryStore(String filepath, int series, int days) throws IOException {
+        this.filepath = filepath;
+        this.series = series;
+        this.days = days;
+        recordSize = KEY + series * days * Float.BYTES;
+
+        channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+        if (created) {
+            header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, series).putInt(12, days).putLong(COUNT_OFFSET, 0);
+        } else {
+            if (header.getInt(0) != MAGIC) throw new IOException(filepath + " is not a trajectory store");
+            int version = header.getInt(4);
+            if (version != VERSION) throw new IOException("Unsupported trajectory store version " + version);
+            if (header.getInt(8) != series || header.getInt(12) != days)
+                throw new IOException(filepath + " holds " + header.getInt(8) + " series of " + header.getInt(12)
+                        + " days, not " + series + " of " + days);
+            long stored = header.getLong(COUNT_OFFSET);
+            if (stored > Integer.MAX_VALUE) throw new IOException(filepath + " has too many records");
+            count = (int) stored;
+            int evaluations = 0;
+            for (int r = 0; r < count; r += getEvaluationSize(r)) {
+                long id = getEvaluation(r);
+                index.computeIfAbsent(getParameters(r), p -> new ArrayList<>())
+                        .add(new StoredEvaluation(id, isSeeded(r), getGeneration(r), r, getEvaluationSize(r)));
+                nextEvaluation = Math.max(nextEvaluation, id + 1);
+                evaluations++;
+            }
+            System.out.println("Trajectory store " + filepath + " holds " + count + " replicates of " + evaluations
+                    + " evaluations of " + index.size() + " configurations");
+        }
+    }
+
+    /**
+     * A store for ModelSimulation's series over its days.
+     */
+    public static TrajectoryStore open(String filepath) throws IOException {
+        return new TrajectoryStore(filepath, ModelSimulation.SERIES, ModelSimulation.DAYS);
+    }
+
+    // The segment holding record 'r', mapping it (and so growing the file) if need be
+    private MappedByteBuffer segment(int r) throws IOException {
+        int s = r / SEGMENT_RECORDS;
+        while (segments.size() <= s) {
+            long offset = HEADER + (long) segments.size() * SEGMENT_RECORDS * recordSize;
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, offset, (long) SEGMENT_RECORDS * recordSize));
+        }
+        return segments.get(s);
+    }
+
+    // Where record 'r' starts in its segment
+    private int position(int r) {
+        return (r % SEGMENT_RECORDS) * recordSize;
+    }
+
+    /**
+     * Add the replicates of an evaluation that has finished.
+     *
+     * @param parameters The configuration it ran
+     * @param seeded     Whether its replicates were given seeds
+     * @param generation The generation whose seeds they were given, if they were seeded
+     * @param seeds      The seed each replicate ran with, if they were seeded
+     * @param values     Each replicate's daily values, [series][day]
+     * @param replicates How many of 'values' to add
+     * @return The number the evaluation is filed under
+     */
+    public synchronized long addEvaluation(PolicyParameters parameters, boolean seeded, int generation, int[] seeds,
+                                           List<double[][]> values, int replicates) throws IOException {
+        if (replicates == 0) return -1;
+        long id = nextEvaluation++;
+        int first = count;
+        int bits = 0;
+        for (int i = 0; i < PolicyParameters.SWITCHES.length; i++) if (parameters.getSwitch(i)) bits |= 1 << i;
+
+        for (int i = 0; i < replicates; i++) {
+            int r = first + i;
+            MappedByteBuffer segment = segment(r);
+            int pos = position(r);
+            segment.put(pos, (byte) bits);
+            segment.put(pos + 1, (byte) (seeded ? 1 : 0));
+            segment.putShort(pos + 2, (short) i);
+            segment.putInt(pos + 4, seeded ? seeds[i] : 0);
+            segment.putLong(pos + 8, id);
+            segment.putInt(pos + 16, seeded ? generation : 0);
+            segment.putInt(pos + 20, replicates);
+            pos += 24;
+            for (int t = 0; t < PolicyParameters.THRESHOLDS.length; t++, pos += Double.BYTES)
+                segment.putDouble(pos, parameters.getThreshold(t));
+            double[][] v = values.get(i);
+            for (int s = 0; s < series; s++)
+                for (int d = 0; d < days; d++, pos += Float.BYTES) segment.putFloat(pos, (float) v[s][d]);
+        }
+
+        // Only now do the records count
+        count = first + replicates;
+        header.putLong(COUNT_OFFSET, count);
+        index.computeIfAbsent(parameters, p -> new ArrayList<>()).add(new StoredEvaluation(id, seeded, generation, first, replicates));
+        return id;
+    }
+
+    /**
+     * @return How many replicates are stored
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return Every configuration that has at least one evaluation stored
+     */
+    public synchronized Set<PolicyParameters> getConfigurations() {
+        return Collections.unmodifiableSet(new HashSet<>(index.keySet()));
+    }
+
+    /**
+     * @return The records holding the replicates of 'parameters', in the order they were added
+     */
+    public synchronized List<Integer> getReplicates(PolicyParameters parameters) {
+        List<Integer> records = new ArrayList<>();
+        List<StoredEvaluation> evaluations = index.get(parameters);
+        if (evaluations == null) return records;
+        for (StoredEvaluation e : evaluations)
+            for (int i = 0; i < e.replicates; i++) records.add(e.first + i);
+        return records;
+    }
+
+    /**
+     * @return The record of the replicate of 'parameters' run with 'seed', or -1 if there isn't one
+     */
+    public synchronized int find(PolicyParameters parameters, int seed) throws IOException {
+        for (int r : getReplicates(parameters)) if (isSeeded(r) && getSeed(r) == seed) return r;
+        return -1;
+    }
+
+    public synchronized PolicyParameters getParameters(int r) throws IOException {
+        MappedByteBuffer segment = segment(checked(r));
+        int pos = position(r);
+        boolean[] switches = new boolean[PolicyParameters.SWITCHES.length];
+        int bits = segment.get(pos);
+        for (int i = 0; i < switches.length; i++) switches[i] = (bits & (1 << i)) != 0;
+        double[] thresholds = new double[PolicyParameters.THRESHOLDS.length];
+        for (int i = 0; i < thresholds.length; i++) thresholds[i] = segment.getDouble(pos + 24 + i * Double.BYTES);
+        return new PolicyParameters(switches, thresholds);
+    }
+
+    public synchronized boolean isSeeded(int r) throws IOException {
+        return (segment(checked(r)).get(position(r) + 1) & 1) != 0;
+    }
+
+    /**
+     * @return Which replicate of its evaluation record 'r' is, starting at 0
+     */
+    public synchronized int getReplicate(int r) throws IOException {
+        return segment(checked(r)).getShort(position(r) + 2);
+    }
+
+    public synchronized int getSeed(int r) throws IOException {
+        return segment(checked(r)).getInt(position(r) + 4);
+    }
+
+    /**
+     * @return The number of the evaluation record 'r' belongs to
+     */
+    public synchronized long getEvaluation(int r) throws IOException {
+        return segment(checked(r)).getLong(position(r) + 8);
+    }
+
+    /**
+     * @return The generation whose seeds record 'r' ran with, if it was seeded
+     */
+    public synchronized int getGeneration(int r) throws IOException {
+        return segment(checked(r)).getInt(position(r) + 16);
+    }
+
+    /**
+     * @return How many replicates the evaluation record 'r' belongs to has
+     */
+    public synchronized int getEvaluationSize(int r) throws IOException {
+        return segment(checked(r)).getInt(position(r) + 20);
+    }
+
+    /**
+     * @return The value of 'series' on 'day' in record 'r'
+     */
+    public synchronized float get(int r, int series, int day) throws IOException {
+        return segment(checked(r)).getFloat(position(r) + KEY + (series * days + day) * Float.BYTES);
+    }
+
+    /**
+     * Read the whole of record 'r' into 'values', [series][day].
+     */
+    public synchronized void read(int r, double[][] values) throws IOException {
+        MappedByteBuffer segment = segment(checked(r));
+        int pos = position(r) + KEY;
+        for (int s = 0; s < series; s++)
+            for (int d = 0; d < days; d++, pos += Float.BYTES) values[s][d] = segment.getFloat(pos);
+    }
+
+    /**
+     * Fill 'cache' with the result of every stored evaluation that has at least
+     * 'replicates' replicates and could have been run by the Solver as it is now:
+     * unseeded evaluations if 'seeds' is null, otherwise evaluations whose replicates
+     * ran on the seeds 'seeds' gives their generation, filed under that generation.
+     * Each is scored on its first 'replicates' replicates, the way finishEvaluation
+     * would have scored them.
+     *
+     * @param cache       The cache to fill
+     * @param replicates  How many replicates a result averages
+     * @param seeds       The Solver's seeds, or null if it doesn't seed its replicates
+     * @param costs       The cost model to score with
+     * @param compliances The compliance of each method, indexed by CostKernel.PPE ... SHIELDING
+     * @return How many results were added
+     */
+    public int warm(FitnessCache<EvaluationKey> cache, int replicates, Seeds seeds, CostModel costs, double[] compliances) throws IOException {
+        Map<PolicyParameters, List<StoredEvaluation>> evaluations;
+        synchronized (this) {
+            evaluations = new HashMap<>(index);
+        }
+
+        int warmed = 0;
+        double[][] values = new double[series][days];
+        double[][] means = new double[series][days];
+        for (Map.Entry<PolicyParameters, List<StoredEvaluation>> entry : evaluations.entrySet()) {
+            Set<EvaluationKey> done = new HashSet<>();
+            for (StoredEvaluation e : entry.getValue()) {
+                if (e.replicates < replicates || e.seeded != (seeds != null)) continue;
+                if (seeds != null && !ranOn(e, seeds, replicates)) continue;
+                EvaluationKey key = new EvaluationKey(entry.getKey(), seeds == null ? EvaluationKey.UNSEEDED : e.generation);
+                if (!done.add(key)) continue;
+
+                for (double[] m : means) Arrays.fill(m, 0);
+                for (int i = 0; i < replicates; i++) {
+                    read(e.first + i, values);
+                    for (int s = 0; s < series; s++)
+                        for (int d = 0; d < days; d++) means[s][d] += (values[s][d] - means[s][d]) / (i + 1);
+                }
+                costs.prepare(CostPolicy.of(entry.getKey(), compliances));
+                Chromosome c = new Chromosome(PolicyParameters.NUM_PARAMETERS, 1);
+                c.setFitness(ModelSimulation.score(means, costs, new double[days], c));
+                cache.put(key, Evaluation.of(c));
+                warmed++;
+            }
+        }
+        return warmed;
+    }
+
+    // Whether the first 'replicates' replicates of 'e' ran on the seeds 'seeds' gives its generation
+    private boolean ranOn(StoredEvaluation e, Seeds seeds, int replicates) throws IOException {
+        for (int i = 0; i < replicates; i++)
+            if (getSeed(e.first + i) != seeds.replicateSeed(e.generation, i)) return false;
+        return true;
+    }
+
+    private int checked(int r) {
+        if (r < 0 || r >= count) throw new IndexOutOfBoundsException("Record " + r + " of " + count);
+        return r;
+    }
+
+    /**
+     * Make sure everything written so far is on disk.
+     */
+    public synchronized void flush() {
+        for (MappedByteBuffer segment : segments) segment.force();
+        header.force();
+    }
+
+    public synchronized void close() throws IOException {
+        flush();
+        segments.clear();
+        channel.close();
+        System.out.println("Trajectory store " + filepath + " closed with " + count + " replicates");
+    }
+}
@@ -0,0 +1,101 @@
+package com.example;
+
+import static com.example.ModelSimulation.ADMISSIONS;
+import static com.example.ModelSimulation.DEATHS;
+import static com.example.ModelSimulation.INFECTED;
+import static com.example.ModelSimulation.OFF_WORK;
+import static com.example.ModelSimulation.POPULATION;
+import static com.example.ModelSimulation.UNPRODUCTIVE;
+
+/**
+ * WorkAbsenceCostModel is the infection cost left commented out in the
+ * original simulate loop, which weighs the infected by what the epidemic is
+ * doing to the economy that day:
+ *
+ *   eqnI = I * wage * O + I * wage * U + I * hospitalCost * A + D * deathCost
+ *   maxI = P * wage * O + P * wage * U + P * hospitalCost * A + D * deathCost
+ *
+ * for the average infected I, off work O, unproductive U, admissions A, deaths
+ * D and population P of the day. The method cost is the same as CostKernel's.
+ */
+public class WorkAbsenceCostModel extends CostKernel {
+
+    public static final double HOSPITAL_COST = 400;
+
+    private final double hospitalCost;
+
+    public WorkAbsenceCostModel(double infectionWeighting, double methodWeighting) {
+        this(infectionWeighting, methodWeighting, HOSPITAL_COST);
+    }
+
+    /**
+     * @param hospitalCost What a hospital admission costs per day
+     */
+    public WorkAbsenceCostModel(double infectionWeighting, double methodWeighting, double hospitalCost) {
+        super(infectionWeighting, methodWeighting);
+        this.hospitalCost = hospitalCost;
+    }
+
+    public String getName() {
+        return "work-absence";
+    }
+
+    public double sumCost(double[][] series, int from, int to) {
+        double total = 0;
+        for (int d = from; d < to; d++) {
+            double p = series[POPULATION][d];
+            double normI = normInfectionCost(series[INFECTED][d], series[OFF_WORK][d], series[UNPRODUCTIVE][d],
+                    series[ADMISSIONS][d], series[DEATHS][d], p);
+            total += Math.abs(infectionWeighting * normI + methodWeighting * normMethodCost(p));
+        }
+        return total;
+    }
+
+    public double dailyCosts(double[][] series, double[] dailyCost) {
+        double[] infections = series[INFECTED];
+        double[] offWork = series[OFF_WORK];
+        double[] unproductive = series[UNPRODUCTIVE];
+        double[] admissions = series[ADMISSIONS];
+        double[] deaths = series[DEATHS];
+        double[] population = series[POPULATION];
+        double total = 0;
+        double iCost = 0;
+        double mCost = 0;
+        for (int d = 0; d < dailyCost.length; d++) {
+            double p = population[d];
+            double normI = normInfectionCost(infections[d], offWork[d], unproductive[d], admissions[d], deaths[d], p);
+            double i = infectionWeighting * normI;
+            double m = methodWeighting * normMethodCost(p);
+            dailyCost[d] = Math.abs(i + m);
+            total += dailyCost[d];
+            iCost += i;
+            mCost += m;
+        }
+        infectionCost = iCost;
+        methodCost = mCost;
+        return total;
+    }
+
+    /**
+     * The same bound as CostKernel's. Writing k = wage * (O + U) + hospitalCost * A, the
+     * infection cost is (I * k + D * deathCost) / (P * k + D * deathCost), which is at
+     * least I / P whenever k > 0, as I <= P. k is only 0 when no one is admitted, and
+     * the model admits a fixed share of the infected, so then I is 0 too and I / P
+     * still holds, as long as admissions cost something.
+     */
+    public double lowerBound(double[] totals, int replicates, int days) {
+        if (hospitalCost <= 0) {
+            if (infectionWeighting < 0 || methodWeighting < 0) return 0;
+            return days * methodWeighting * methodFloor;
+        }
+        return super.lowerBound(totals, replicates, days);
+    }
+
+    private double normInfectionCost(double infections, double offWork, double unproductive, double admissions,
+                                     double deaths, double population) {
+        double k = (offWork + unproductive) * AVERAGE_DAILY_WAGE + admissions * hospitalCost;
+        double dead = deaths * DEATH_COST;
+        double maxI = population * k + dead;
+        return maxI == 0 ? 0 : (infections * k + dead) / maxI;
+    }
+}
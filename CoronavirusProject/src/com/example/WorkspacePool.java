@@ -0,0 +1,83 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * WorkspacePool keeps a fixed number of ModelSimulation objects, each with its
+ * own HeadlessWorkspace, compiled copy of the model and private log files. A
+ * simulation is borrowed from the pool for a single evaluation and handed back
+ * afterwards, so no two threads ever drive the same workspace at once.
+ */
+public class WorkspacePool {
+
+    private final List<ModelSimulation> all = new ArrayList<>();    // Every simulation we created
+    private final BlockingQueue<ModelSimulation> idle;              // Simulations free to be borrowed
+
+    /**
+     * Opens 'size' copies of the model in 'folder'.
+     *
+     * @param folder    The folder containing the model
+     * @param model     The name of the model file
+     * @param size      How many workspaces to open
+     */
+    public WorkspacePool(String folder, String model, int size) {
+        idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            ModelSimulation ms = new ModelSimulation(folder, model, i);
+            all.add(ms);
+            idle.add(ms);
+        }
+    }
+
+    /**
+     * A pool holding just 'ms', for code that expects a pool.
+     */
+    public WorkspacePool(ModelSimulation ms) {
+        idle = new ArrayBlockingQueue<>(1);
+        all.add(ms);
+        idle.add(ms);
+    }
+
+    /**
+     * Borrow a simulation from the pool, waiting until one is free.
+     *
+     * @return A simulation that nobody else is using
+     */
+    public ModelSimulation acquire() throws InterruptedException {
+        return idle.take();
+    }
+
+    /**
+     * Give a simulation back to the pool once we have finished with it.
+     */
+    public void release(ModelSimulation ms) {
+        idle.add(ms);
+    }
+
+    /**
+     * Have every simulation in the pool record into 'metrics'.
+     */
+    public void setMetrics(Metrics metrics) {
+        for (ModelSimulation ms : all) ms.setMetrics(metrics);
+    }
+
+    public void setTrajectoryStore(TrajectoryStore store) {
+        for (ModelSimulation ms : all) ms.setTrajectoryStore(store);
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    /**
+     * Close every workspace in the pool.
+     */
+    public void close() {
+        for (ModelSimulation ms : all) ms.dispose();
+        all.clear();
+        idle.clear();
+    }
+}
@@ -0,0 +1,134 @@
+package com.example;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Scores small populations on EvaluationWorker processes started on localhost,
+ * and checks every chromosome comes back with the fitness the Solver gives it
+ * when it scores it itself. Both sides use the same common random numbers, so
+ * the replicates are the same runs of the model.
+ *
+ * The workers need the NetLogo model, so these only run when the folder
+ * holding it is given with -Dcovid.model.folder=...
+ */
+public class CoordinatorTest {
+
+    private static final String FOLDER_PROPERTY = "covid.model.folder";
+    private static final String MODEL = "covid-model.nlogo";
+    private static final long MASTER_SEED = 20200323L;
+    private static final int GENES = 12;
+    private static final int POPULATION = 6;
+    private static final long STARTUP_TIMEOUT = 120000;    // How long the workers get to open their workspaces
+    private static final long KILL_AFTER = 2000;           // Long enough for jobs to be handed out, not for them to finish
+
+    private String folder;
+    private Solver remote;
+    private final List<Process> workers = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        folder = System.getProperty(FOLDER_PROPERTY);
+        Assume.assumeTrue("Set -D" + FOLDER_PROPERTY + " to the folder holding " + MODEL,
+                folder != null && new File(folder, MODEL).isFile());
+        // ModelSimulation appends the model's name to the folder as it is
+        if (!folder.endsWith(File.separator)) folder += File.separator;
+
+        remote = Solver.distributed(0, 2);
+        remote.setCommonRandomNumbers(MASTER_SEED);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (remote != null) remote.close();
+        for (Process worker : workers) {
+            worker.destroy();
+            worker.waitFor();
+        }
+    }
+
+    @Test
+    public void workersScoreAsTheSolverWould() throws IOException, InterruptedException {
+        startWorkers(2);
+        Chromosome[] scored = population();
+        remote.evaluator.scoreAll(scored);
+        checkAgainstLocal(scored);
+    }
+
+    @Test
+    public void jobsOfAKilledWorkerFinishOnTheOther() throws Throwable {
+        startWorkers(2);
+        Chromosome[] scored = population();
+
+        // Score in the background so a worker can be killed while it holds jobs
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread scorer = new Thread(() -> {
+            try {
+                remote.evaluator.scoreAll(scored);
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "test-scorer");
+        scorer.start();
+        Thread.sleep(KILL_AFTER);
+        workers.get(0).destroyForcibly().waitFor();
+        scorer.join();
+
+        if (failure.get() != null) throw failure.get();
+        checkAgainstLocal(scored);
+    }
+
+    // Start 'count' worker processes with a workspace each and wait for them all to connect
+    private void startWorkers(int count) throws IOException, InterruptedException {
+        Coordinator coordinator = (Coordinator) remote.evaluator;
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int w = 0; w < count; w++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    EvaluationWorker.class.getName(), "localhost", String.valueOf(coordinator.getPort()), "1", folder);
+            workers.add(builder.inheritIO().start());
+        }
+
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while (coordinator.getCapacity() < count) {
+            if (System.currentTimeMillis() > deadline)
+                throw new IllegalStateException("Only " + coordinator.getCapacity() + " of " + count + " workers connected");
+            Thread.sleep(100);
+        }
+    }
+
+    // Score the same population here and compare it with 'scored'
+    private void checkAgainstLocal(Chromosome[] scored) throws IOException {
+        Solver local = new Solver(folder, MODEL);
+        local.setCommonRandomNumbers(MASTER_SEED);
+        try {
+            Chromosome[] expected = population();
+            for (int i = 0; i < POPULATION; i++) {
+                local.scoreNetLogoSolution(expected[i]);
+                assertEquals("fitness of " + i, expected[i].getFitness(), scored[i].getFitness(), 0);
+                assertEquals("infections of " + i, expected[i].getInfections(), scored[i].getInfections(), 0);
+                assertEquals("deaths of " + i, expected[i].getDeaths(), scored[i].getDeaths(), 0);
+            }
+        } finally {
+            local.close();
+        }
+    }
+
+    // The same random population every time it is asked for
+    private static Chromosome[] population() {
+        Random random = new Random(MASTER_SEED);
+        Chromosome[] pop = new Chromosome[POPULATION];
+        for (int i = 0; i < POPULATION; i++) pop[i] = new Chromosome(GENES, 1, random);
+        return pop;
+    }
+}
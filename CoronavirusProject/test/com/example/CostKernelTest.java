@@ -0,0 +1,159 @@
+package com.example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks CostKernel against the daily cost loop simulate used to run, which
+ * worked normI, normM and the daily cost out afresh from the switches,
+ * thresholds and compliances every day.
+ */
+public class CostKernelTest {
+
+    private static final double INFECTION_WEIGHTING = 12;
+    private static final double METHOD_WEIGHTING = 1;
+    private static final double TOLERANCE = 1e-9;
+
+    // The costs per person per day the old loop used
+    private static final double PPE_COST_PER_DAY = 30;
+    private static final double LOCKDOWN_COST_PER_DAY = CostKernel.AVERAGE_DAILY_WAGE * 3;
+    private static final double SD_COST_PER_DAY = 10;
+    private static final double ISOLATION_COST_PER_DAY = CostKernel.AVERAGE_DAILY_WAGE;
+    private static final double SHIELDING_COST_PER_DAY = CostKernel.AVERAGE_DAILY_WAGE;
+
+    private final double[] on = new double[CostKernel.METHODS];
+    private final double[] thresholds = new double[CostKernel.METHODS];
+    private final double[] compliances = new double[CostKernel.METHODS];
+    private double ttOn;
+    private double ttThreshold;
+
+    @Test
+    public void matchesOldLoopWithEveryMethodOn() {
+        setPolicy(new double[]{1, 1, 1, 1, 1}, new double[]{20, 35, 50, 65, 80}, 1, 40);
+        check(series(new double[]{0, 5, 40, 120, 300, 80},
+                new double[]{1000, 1000, 998, 990, 975, 970},
+                new double[]{0, 0, 2, 8, 15, 5}));
+    }
+
+    @Test
+    public void matchesOldLoopWithEveryMethodOff() {
+        setPolicy(new double[]{0, 0, 0, 0, 0}, new double[]{0, 0, 0, 0, 0}, 0, 0);
+        check(series(new double[]{10, 60, 200, 400, 350, 100},
+                new double[]{1000, 995, 980, 950, 930, 925},
+                new double[]{0, 5, 15, 30, 20, 5}));
+    }
+
+    @Test
+    public void matchesOldLoopWithNoDeaths() {
+        setPolicy(new double[]{1, 0, 1, 0, 1}, new double[]{10, 0, 90, 0, 45}, 1, 0);
+        check(series(new double[]{3, 12, 50, 25, 7},
+                new double[]{500, 500, 500, 500, 500},
+                new double[]{0, 0, 0, 0, 0}));
+    }
+
+    @Test
+    public void matchesOldLoopWithNoCases() {
+        setPolicy(new double[]{0, 1, 0, 1, 0}, new double[]{0, 70, 0, 25, 0}, 0, 0);
+        check(series(new double[]{0, 0, 0, 0},
+                new double[]{800, 800, 800, 800},
+                new double[]{0, 0, 0, 0}));
+    }
+
+    @Test
+    public void matchesOldLoopWithNoOneLeft() {
+        // With no population and no deaths the old loop counted no infection cost,
+        // and the method cost came down to test and trace alone
+        setPolicy(new double[]{1, 1, 1, 1, 1}, new double[]{50, 50, 50, 50, 50}, 1, 30);
+        check(series(new double[]{0, 0, 0},
+                new double[]{0, 0, 0},
+                new double[]{0, 3, 0}));
+    }
+
+    @Test
+    public void sumCostMatchesDailyCosts() {
+        setPolicy(new double[]{1, 0, 1, 1, 0}, new double[]{15, 0, 60, 30, 0}, 1, 55);
+        double[][] series = series(new double[]{2, 20, 90, 150, 60, 10},
+                new double[]{1000, 1000, 995, 985, 980, 980},
+                new double[]{0, 0, 5, 10, 5, 0});
+        CostKernel kernel = kernel();
+        double[] dailyCost = new double[6];
+        kernel.dailyCosts(series, dailyCost);
+        assertEquals(dailyCost[2] + dailyCost[3] + dailyCost[4], kernel.sumCost(series, 2, 5), TOLERANCE);
+    }
+
+    private void setPolicy(double[] on, double[] thresholds, double ttOn, double ttThreshold) {
+        System.arraycopy(on, 0, this.on, 0, CostKernel.METHODS);
+        System.arraycopy(thresholds, 0, this.thresholds, 0, CostKernel.METHODS);
+        System.arraycopy(CostPolicy.INITIAL_COMPLIANCES, 0, compliances, 0, CostKernel.METHODS);
+        this.ttOn = ttOn;
+        this.ttThreshold = ttThreshold;
+    }
+
+    private CostKernel kernel() {
+        CostKernel kernel = new CostKernel(INFECTION_WEIGHTING, METHOD_WEIGHTING);
+        kernel.prepare(new CostPolicy(on.clone(), thresholds.clone(), compliances.clone(), ttOn, ttThreshold));
+        return kernel;
+    }
+
+    private static double[][] series(double[] infections, double[] population, double[] deaths) {
+        double[][] series = new double[ModelSimulation.SERIES][infections.length];
+        series[ModelSimulation.INFECTED] = infections;
+        series[ModelSimulation.POPULATION] = population;
+        series[ModelSimulation.DEATHS] = deaths;
+        return series;
+    }
+
+    // Score 'series' with the kernel and the old loop and compare every day and total
+    private void check(double[][] series) {
+        int days = series[ModelSimulation.INFECTED].length;
+        CostKernel kernel = kernel();
+        double[] dailyCost = new double[days];
+        double total = kernel.dailyCosts(series, dailyCost);
+
+        double expectedTotal = 0;
+        double iCost = 0;
+        double mCost = 0;
+        for (int d = 0; d < days; d++) {
+            double i = INFECTION_WEIGHTING * oldNormI(series, d);
+            double m = METHOD_WEIGHTING * oldNormM(series, d);
+            double expected = Math.abs(i + m);
+            assertEquals("day " + d, expected, dailyCost[d], TOLERANCE);
+            expectedTotal += expected;
+            iCost += i;
+            mCost += m;
+        }
+        assertEquals(expectedTotal, total, TOLERANCE);
+        assertEquals(expectedTotal, kernel.sumCost(series, 0, days), TOLERANCE);
+        assertEquals(iCost, kernel.getInfectionCost(), TOLERANCE);
+        assertEquals(mCost, kernel.getMethodCost(), TOLERANCE);
+    }
+
+    // normI as the old loop worked it out
+    private static double oldNormI(double[][] series, int d) {
+        double infections = series[ModelSimulation.INFECTED][d];
+        double population = series[ModelSimulation.POPULATION][d];
+        double deaths = series[ModelSimulation.DEATHS][d];
+        double eqnI = (infections * CostKernel.AVERAGE_DAILY_WAGE) + (deaths * CostKernel.DEATH_COST);
+        double maxI = (population * CostKernel.AVERAGE_DAILY_WAGE) + (deaths * CostKernel.DEATH_COST);
+        return maxI == 0 ? 0 : eqnI / maxI;
+    }
+
+    // normM as the old loop worked it out
+    private double oldNormM(double[][] series, int d) {
+        double population = series[ModelSimulation.POPULATION][d];
+        double eqnM = (on[CostKernel.PPE] * (1 - (thresholds[CostKernel.PPE] / 100)) * ((compliances[CostKernel.PPE] / 100) * population) * PPE_COST_PER_DAY) +
+                (on[CostKernel.LOCKDOWN] * (1 - (thresholds[CostKernel.LOCKDOWN] / 100)) * ((compliances[CostKernel.LOCKDOWN] / 100) * population) * LOCKDOWN_COST_PER_DAY) +
+                (on[CostKernel.SOCIAL_DISTANCING] * (1 - (thresholds[CostKernel.SOCIAL_DISTANCING] / 100)) * ((compliances[CostKernel.SOCIAL_DISTANCING] / 100) * population) * SD_COST_PER_DAY) +
+                (on[CostKernel.ISOLATION] * (1 - (thresholds[CostKernel.ISOLATION] / 100)) * ((compliances[CostKernel.ISOLATION] / 100) * population) * ISOLATION_COST_PER_DAY) +
+                (on[CostKernel.SHIELDING] * (1 - (thresholds[CostKernel.SHIELDING] / 100)) * ((compliances[CostKernel.SHIELDING] / 100) * population) * SHIELDING_COST_PER_DAY) +
+                (ttOn * CostKernel.TEST_AND_TRACE_COST * (1 - (ttThreshold / 100)));
+        double maxM = ((compliances[CostKernel.PPE] / 100) * population * PPE_COST_PER_DAY) +
+                ((compliances[CostKernel.LOCKDOWN] / 100) * population * LOCKDOWN_COST_PER_DAY) +
+                ((compliances[CostKernel.SOCIAL_DISTANCING] / 100) * population * SD_COST_PER_DAY) +
+                ((compliances[CostKernel.ISOLATION] / 100) * population * ISOLATION_COST_PER_DAY) +
+                ((compliances[CostKernel.SHIELDING] / 100) * population * SHIELDING_COST_PER_DAY) +
+                CostKernel.TEST_AND_TRACE_COST;
+        return eqnM / maxM;
+    }
+}